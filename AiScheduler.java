@@ -0,0 +1,187 @@
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs computer moves for many sessions on a fixed set of workers. Jobs are ordered by a rank in
+// nanoseconds: submission time plus the expected cost of the job (so cheap moves overtake an
+// expensive search but an old job always comes up eventually), pulled forward to the latest start
+// that still meets the job's deadline, and pushed back by the session's own backlog so one busy
+// session cannot crowd out the rest. Hard searches are cut off at the deadline. When the queue
+// is saturated new jobs are answered at once with the Medium strategy instead of being queued.
+public class AiScheduler implements Closeable {
+    private static final long FAIR_QUANTUM_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long CHEAP_COST_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final class Job {
+        final long sessionId;
+        final int[] cells;
+        final int boardSize;
+        final int marksToWin;
+        final int side;
+        final int difficulty;
+        final Random rand;
+        final long submitted;
+        final long deadline;
+        final long rank;
+        final long sequence;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Job(long sessionId, int[] cells, int boardSize, int marksToWin, int side, int difficulty, Random rand,
+            long submitted, long deadline, long rank, long sequence) {
+            this.sessionId = sessionId;
+            this.cells = cells;
+            this.boardSize = boardSize;
+            this.marksToWin = marksToWin;
+            this.side = side;
+            this.difficulty = difficulty;
+            this.rand = rand;
+            this.submitted = submitted;
+            this.deadline = deadline;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+    }
+
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>(256,
+            (a, b) -> a.rank != b.rank ? Long.compare(a.rank, b.rank) : Long.compare(a.sequence, b.sequence));
+    private final Map<Long, Integer> backlog = new ConcurrentHashMap<>();     // queued or running jobs per session
+    private final AtomicLongArray hardCostNanos = new AtomicLongArray(20);   // running average per board size
+    private final Thread[] workers;
+    private final int maxQueued;
+    private final int maxPerSession;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder deadlineMisses = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private volatile boolean running = true;
+
+    public AiScheduler(int workerCount, int maxQueued, int maxPerSession) {
+        this.maxQueued = maxQueued;
+        this.maxPerSession = maxPerSession;
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::workLoop, "ai-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public AiScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), 10_000, 4);
+    }
+
+    public CompletableFuture<Integer> submit(long sessionId, int[] cells, int boardSize, int marksToWin, int side,
+                                             int difficulty, long timeoutNanos, Random rand) {
+        long now = System.nanoTime();
+        int ahead = backlog.merge(sessionId, 1, Integer::sum) - 1;
+        if (queue.size() >= maxQueued || ahead >= maxPerSession) {
+            release(sessionId);
+            shed.increment();
+            int cell = EngineAI.mediumMove(cells, boardSize, marksToWin, side, rand);
+            return CompletableFuture.completedFuture(cell);
+        }
+        long deadline = now + timeoutNanos;
+        int level = EngineAI.effectiveLevel(difficulty, boardSize, marksToWin);
+        long cost = estimatedCost(level, boardSize, marksToWin);
+        long rank = Math.min(now + cost, deadline - cost) + ahead * FAIR_QUANTUM_NANOS;
+        Job job = new Job(sessionId, cells, boardSize, marksToWin, side, level, rand, now, deadline, rank,
+                sequence.getAndIncrement());
+        queue.add(job);
+        return job.result;
+    }
+
+    // Counts one of the session's jobs as done; the entry goes away with its last job, atomically
+    // with respect to submit adding another.
+    private void release(long sessionId) {
+        backlog.computeIfPresent(sessionId, (id, pending) -> pending == 1 ? null : pending - 1);
+    }
+
+    private long estimatedCost(int difficulty, int boardSize, int marksToWin) {
+        if (difficulty != EngineAI.HARD || (boardSize == 3 && marksToWin == 3)) {
+            return CHEAP_COST_NANOS;
+        }
+        long average = boardSize < hardCostNanos.length() ? hardCostNanos.get(boardSize) : 0;
+        return average > 0 ? average : TimeUnit.MILLISECONDS.toNanos(boardSize * 20L);
+    }
+
+    private void workLoop() {
+        while (running) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = System.nanoTime();
+            totalWaitNanos.add(start - job.submitted);
+            try {
+                job.result.complete(run(job, start));
+            } catch (RuntimeException e) {
+                job.result.completeExceptionally(e);
+            } finally {
+                release(job.sessionId);
+                completed.increment();
+                if (System.nanoTime() > job.deadline) {
+                    deadlineMisses.increment();
+                }
+            }
+        }
+    }
+
+    private int run(Job job, long start) {
+        if (job.difficulty != EngineAI.HARD) {
+            return EngineAI.chooseMove(job.cells, job.boardSize, job.marksToWin, job.side, job.difficulty, job.rand);
+        }
+        if (start >= job.deadline) {
+            // Already late: answer cheaply rather than make it later still.
+            return EngineAI.mediumMove(job.cells, job.boardSize, job.marksToWin, job.side, job.rand);
+        }
+        int cell = EngineAI.hardMove(job.cells, job.boardSize, job.marksToWin, job.side, job.deadline);
+        if (job.boardSize < hardCostNanos.length() && !(job.boardSize == 3 && job.marksToWin == 3)) {
+            long elapsed = System.nanoTime() - start;
+            long average = hardCostNanos.get(job.boardSize);
+            hardCostNanos.set(job.boardSize, average == 0 ? elapsed : (average * 7 + elapsed) / 8);
+        }
+        return cell;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getDeadlineMisses() {
+        return deadlineMisses.sum();
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public String stats() {
+        long done = completed.sum();
+        return String.format("queued=%d completed=%d deadlineMisses=%d shed=%d avgWaitMs=%.2f",
+                queue.size(), done, deadlineMisses.sum(), shed.sum(),
+                done == 0 ? 0.0 : totalWaitNanos.sum() / 1e6 / done);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        Job job;
+        while ((job = queue.poll()) != null) {
+            job.result.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stateless HTTP front end to the engine:
+//   GET /bestmove?board=X.O......&size=3&k=3&difficulty=3
+// board lists cells row by row using X, O and '.', and the side to move follows from the counts.
+// Answers are {"row":..,"col":..,"cell":..,"score":..,"value":"WIN|DRAW|LOSS|HEURISTIC|BOOK","cached":..};
+// BOOK marks a Hard move taken from the opening book, which carries no score.
+public class BestMoveService {
+    private static final int MAX_CACHED = 100_000;
+
+    private final HttpServer server;
+    private final ExecutorService searchPool;
+    // Hard answers by canonical key, heuristic ones included: the search is deterministic, so an
+    // answer is safe to serve again even though it is not solved and stays out of the shared cache.
+    private final Map<Long, EngineAI.Evaluation> answers = Collections.synchronizedMap(
+            new LinkedHashMap<Long, EngineAI.Evaluation>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, EngineAI.Evaluation> eldest) {
+                    return size() > MAX_CACHED;
+                }
+            });
+    private final Map<Long, CompletableFuture<EngineAI.Evaluation>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+
+    public BestMoveService(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    // Bind to 0.0.0.0 (or a specific interface) to serve other hosts in the stack.
+    public BestMoveService(InetAddress bindAddress, int port) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 1024);
+        server.setExecutor(Executors.newFixedThreadPool(cores * 4));
+        searchPool = Executors.newFixedThreadPool(cores);
+        server.createContext("/bestmove", this::handleBestMove);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Best-move service listening on " + server.getAddress().getAddress().getHostAddress() + ":" + getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        searchPool.shutdownNow();
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleBestMove(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            int size = Integer.parseInt(params.getOrDefault("size", "3"));
+            int marks = Integer.parseInt(params.getOrDefault("k", String.valueOf(size)));
+            int difficulty = Integer.parseInt(params.getOrDefault("difficulty", "3"));
+            int[] cells = parseBoard(params.get("board"), size, marks);
+            int side = sideToMove(cells);
+            respond(exchange, 200, bestMove(cells, size, marks, side, difficulty));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "{\"error\":\"" + e.getMessage().replace("\"", "'") + "\"}");
+        } catch (ExecutionException | InterruptedException e) {
+            respond(exchange, 500, "{\"error\":\"search failed\"}");
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "{\"requests\":" + requests.get() + ",\"cacheHits\":" + hits.get()
+                + ",\"coalesced\":" + coalesced.get() + ",\"searches\":" + searches.get() + ",\"cached\":" + answers.size() + ",\"cache\":\"" + SolvedPositionCache.shared().stats() + "\"}");
+    }
+
+    String bestMove(int[] cells, int size, int marks, int side, int difficulty) throws ExecutionException, InterruptedException {
+        if (EngineAI.effectiveLevel(difficulty, size, marks) != EngineAI.HARD) {
+            // Easy and Medium are randomised on purpose and Expert is a few table lookups, so they
+            // are neither cached nor coalesced.
+            int cell = EngineAI.chooseMove(cells, size, marks, side, difficulty, ThreadLocalRandom.current());
+            return json(cell, size, 0, "HEURISTIC", false);
+        }
+        // Hard plays the opening book first, as EngineAI.hardMove does.
+        int book = EngineAI.bookMove(cells, size, marks);
+        if (book >= 0) {
+            return json(book, size, 0, "BOOK", false);
+        }
+        // Solved Hard answers come from the process-wide solved-position cache and the rest from this
+        // service's own answers; a miss is searched once however many identical (or symmetric)
+        // requests arrive while it runs.
+        SolvedPositionCache.Solved solved = SolvedPositionCache.shared().get(cells, size, marks, side);
+        if (solved != null) {
+            hits.incrementAndGet();
+            return json(solved.cell, size, solved.score, solved.value, true);
+        }
+        long[] keys = BoardSymmetry.keys(cells, size);
+        int sym = BoardSymmetry.minIndex(keys);
+        long key = (keys[sym] * 31 + marks) * 3 + side;
+        int[] canonical = new int[cells.length];
+        for (int cell = 0; cell < cells.length; cell++) {
+            canonical[BoardSymmetry.toCanonical(cell, size, sym)] = cells[cell];
+        }
+        EngineAI.Evaluation answer = answers.get(key);
+        if (answer != null) {
+            hits.incrementAndGet();
+            int cell = answer.cell < 0 ? -1 : BoardSymmetry.fromCanonical(answer.cell, size, sym);
+            return json(cell, size, answer.score, answer.value, true);
+        }
+        CompletableFuture<EngineAI.Evaluation> mine = new CompletableFuture<>();
+        CompletableFuture<EngineAI.Evaluation> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            answer = running.get();
+        } else {
+            searchPool.execute(() -> {
+                try {
+                    searches.incrementAndGet();
+                    EngineAI.Evaluation eval = EngineAI.search(canonical, size, marks, side);
+                    if (eval.proven) {
+                        SolvedPositionCache.shared().put(canonical, size, marks, side, eval.cell, eval.score, eval.value);
+                    }
+                    answers.put(key, eval);
+                    mine.complete(eval);
+                } catch (RuntimeException e) {
+                    mine.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            });
+            answer = mine.get();
+        }
+        int cell = answer.cell < 0 ? -1 : BoardSymmetry.fromCanonical(answer.cell, size, sym);
+        return json(cell, size, answer.score, answer.value, false);
+    }
+
+    private static String json(int cell, int size, int score, String value, boolean cached) {
+        int row = cell < 0 ? -1 : cell / size;
+        int col = cell < 0 ? -1 : cell % size;
+        return "{\"row\":" + row + ",\"col\":" + col + ",\"cell\":" + cell + ",\"score\":" + score
+                + ",\"value\":\"" + value + "\",\"cached\":" + cached + "}";
+    }
+
+    static int[] parseBoard(String board, int size, int marks) {
+        if (size < 3 || size > 10 || marks < 3 || marks > size) {
+            throw new IllegalArgumentException("size must be 3-10 and k between 3 and size");
+        }
+        if (board == null || board.length() != size * size) {
+            throw new IllegalArgumentException("board must have " + size * size + " cells");
+        }
+        int[] cells = new int[size * size];
+        for (int i = 0; i < cells.length; i++) {
+            char c = Character.toUpperCase(board.charAt(i));
+            cells[i] = c == 'X' ? ThreatEvaluator.X : c == 'O' ? ThreatEvaluator.O : ThreatEvaluator.EMPTY;
+            if (cells[i] == ThreatEvaluator.EMPTY && c != '.' && c != '-' && c != '_') {
+                throw new IllegalArgumentException("board may only contain X, O and .");
+            }
+        }
+        ThreatEvaluator check = new ThreatEvaluator(size, marks);
+        check.load(cells);
+        if (check.winner() != ThreatEvaluator.EMPTY || check.isFull()) {
+            throw new IllegalArgumentException("game is already over");
+        }
+        return cells;
+    }
+
+    static int sideToMove(int[] cells) {
+        int x = 0;
+        int o = 0;
+        for (int cell : cells) {
+            if (cell == ThreatEvaluator.X) x++;
+            else if (cell == ThreatEvaluator.O) o++;
+        }
+        if (x != o && x != o + 1) {
+            throw new IllegalArgumentException("X moves first; mark counts are inconsistent");
+        }
+        return x == o ? ThreatEvaluator.X : ThreatEvaluator.O;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Usage: java BestMoveService [port] [bindAddress]
+    // Listens on loopback unless a bind address such as 0.0.0.0 is given.
+    public static void main(String[] args) throws IOException {
+        InetAddress bindAddress = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        BestMoveService service = new BestMoveService(bindAddress, args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+        service.start();
+    }
+}
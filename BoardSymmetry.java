@@ -0,0 +1,115 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class BoardSymmetry {
+    public static final int SYMMETRIES = 8;
+    public static final int MAX_CELLS = 19 * 19;
+
+    // Fixed seed so keys stay stable across runs; checkpoints, books and archives depend on it.
+    private static final long[] ZOBRIST = new long[MAX_CELLS * 3];
+    private static final Map<Integer, int[][]> PERMUTATIONS = new ConcurrentHashMap<>();
+    private static final Map<Integer, int[][]> INVERSES = new ConcurrentHashMap<>();
+
+    static {
+        Random rand = new Random(0x7A7E5EEDL);
+        for (int i = 0; i < ZOBRIST.length; i++) {
+            ZOBRIST[i] = rand.nextLong();
+        }
+    }
+
+    private BoardSymmetry() {
+    }
+
+    // perm[s][cell] is where cell lands under symmetry s (identity, 3 rotations, 4 reflections).
+    public static int[][] permutations(int n) {
+        return PERMUTATIONS.computeIfAbsent(n, size -> {
+            int[][] perms = new int[SYMMETRIES][size * size];
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    int m = size - 1;
+                    int cell = r * size + c;
+                    perms[0][cell] = r * size + c;
+                    perms[1][cell] = c * size + (m - r);
+                    perms[2][cell] = (m - r) * size + (m - c);
+                    perms[3][cell] = (m - c) * size + r;
+                    perms[4][cell] = r * size + (m - c);
+                    perms[5][cell] = (m - r) * size + c;
+                    perms[6][cell] = c * size + r;
+                    perms[7][cell] = (m - c) * size + (m - r);
+                }
+            }
+            return perms;
+        });
+    }
+
+    public static int[][] inverses(int n) {
+        return INVERSES.computeIfAbsent(n, size -> {
+            int[][] perms = permutations(size);
+            int[][] inv = new int[SYMMETRIES][size * size];
+            for (int s = 0; s < SYMMETRIES; s++) {
+                for (int cell = 0; cell < size * size; cell++) {
+                    inv[s][perms[s][cell]] = cell;
+                }
+            }
+            return inv;
+        });
+    }
+
+    public static long zobrist(int cell, int side) {
+        return ZOBRIST[cell * 3 + side];
+    }
+
+    public static long key(int[] cells, int n, int sym) {
+        int[] perm = permutations(n)[sym];
+        long key = n;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != ThreatEvaluator.EMPTY) {
+                key ^= zobrist(perm[cell], cells[cell]);
+            }
+        }
+        return key;
+    }
+
+    // All eight symmetric keys at once, for callers that update them incrementally.
+    public static long[] keys(int[] cells, int n) {
+        long[] keys = new long[SYMMETRIES];
+        for (int s = 0; s < SYMMETRIES; s++) {
+            keys[s] = key(cells, n, s);
+        }
+        return keys;
+    }
+
+    public static void update(long[] keys, int n, int cell, int side) {
+        int[][] perms = permutations(n);
+        for (int s = 0; s < SYMMETRIES; s++) {
+            keys[s] ^= zobrist(perms[s][cell], side);
+        }
+    }
+
+    public static int minIndex(long[] keys) {
+        int best = 0;
+        for (int s = 1; s < keys.length; s++) {
+            if (Long.compareUnsigned(keys[s], keys[best]) < 0) {
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    public static int canonicalSymmetry(int[] cells, int n) {
+        return minIndex(keys(cells, n));
+    }
+
+    public static long canonicalKey(int[] cells, int n) {
+        long[] keys = keys(cells, n);
+        return keys[minIndex(keys)];
+    }
+
+    public static int toCanonical(int cell, int n, int sym) {
+        return permutations(n)[sym][cell];
+    }
+
+    public static int fromCanonical(int cell, int n, int sym) {
+        return inverses(n)[sym][cell];
+    }
+}
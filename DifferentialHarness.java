@@ -0,0 +1,529 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+// Differential check of the move engines against a plain exhaustive minimax. Positions come from
+// every reachable position of the board or from seeded random games; for each one the reference
+// solves the game-theoretic value (win, draw or loss for the side to move) and every engine plays
+// its move side by side: TicTacToeLogic on Hard exactly as the GUI drives it, the EngineAI entry
+// points, the solved-position cache in a rotated orientation and the n-tuple network where one is
+// trained. An engine disagrees when its move falls into a worse class than the best available (a
+// draw where a win exists, a loss where a draw exists), when it claims a value the reference
+// refutes, or when it plays an occupied cell; terminal detection in BatchEvaluator is compared on
+// every position as well. Each disagreement is shrunk by removing X/O pairs while it persists and
+// reported as a small repro board. The reference shares no code with the engines on purpose.
+public class DifferentialHarness {
+    static final int LOSS = -1;
+    static final int DRAW = 0;
+    static final int WIN = 1;
+    private static final String[] VALUE_NAMES = {"LOSS", "DRAW", "WIN"};
+
+    // The cell an engine plays and the value it claims for the position (null if it claims none).
+    static final class Answer {
+        final int cell;
+        final String value;
+
+        Answer(int cell, String value) {
+            this.cell = cell;
+            this.value = value;
+        }
+    }
+
+    interface Player {
+        Answer play(int[] cells, int side);
+    }
+
+    static final class Engine {
+        final String name;
+        final boolean exact;        // promises optimal play on this board, so misses are failures
+        final Player player;
+        final LongAdder checked = new LongAdder();
+        final LongAdder disagreements = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final AtomicInteger reproSlots = new AtomicInteger();
+        final Queue<String> repros = new ConcurrentLinkedQueue<>();
+
+        Engine(String name, boolean exact, Player player) {
+            this.name = name;
+            this.exact = exact;
+            this.player = player;
+        }
+    }
+
+    // Plain memoized negamax over win/draw/loss for boards of up to 5x5. Not thread-safe.
+    static final class Reference {
+        private final int boardSize;
+        private final int marksToWin;
+        private final int cellCount;
+        private long[] keys;
+        private byte[] values;
+        private int size;
+
+        Reference(int boardSize, int marksToWin, int capacity) {
+            this.boardSize = boardSize;
+            this.marksToWin = marksToWin;
+            this.cellCount = boardSize * boardSize;
+            keys = new long[capacity];
+            values = new byte[capacity];
+        }
+
+        boolean wins(int[] cells, int cell, int side) {
+            int row = cell / boardSize;
+            int col = cell % boardSize;
+            int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+            for (int[] d : directions) {
+                int run = 1;
+                for (int r = row + d[0], c = col + d[1]; r >= 0 && r < boardSize && c >= 0 && c < boardSize
+                        && cells[r * boardSize + c] == side; r += d[0], c += d[1]) {
+                    run++;
+                }
+                for (int r = row - d[0], c = col - d[1]; r >= 0 && r < boardSize && c >= 0 && c < boardSize
+                        && cells[r * boardSize + c] == side; r -= d[0], c -= d[1]) {
+                    run++;
+                }
+                if (run >= marksToWin) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // BatchEvaluator flags for the position: who has a line, a full board, and TERMINAL.
+        int status(int[] cells) {
+            int flags = 0;
+            boolean full = true;
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (cells[cell] == ThreatEvaluator.EMPTY) {
+                    full = false;
+                } else if (wins(cells, cell, cells[cell])) {
+                    flags |= cells[cell] == ThreatEvaluator.X ? BatchEvaluator.X_WINS : BatchEvaluator.O_WINS;
+                }
+            }
+            if (flags == 0 && full) {
+                flags = BatchEvaluator.DRAW;
+            }
+            return flags != 0 ? flags | BatchEvaluator.TERMINAL : 0;
+        }
+
+        // Value for side to move in a position that is still being played.
+        int solve(int[] cells, int side) {
+            return solve(cells, side, BatchEvaluator.pack(cells, ThreatEvaluator.X), BatchEvaluator.pack(cells, ThreatEvaluator.O));
+        }
+
+        // Class of playing cell: WIN, DRAW or LOSS for side.
+        int moveClass(int[] cells, int side, int cell) {
+            if (wins(cells, cell, side)) {
+                return WIN;
+            }
+            cells[cell] = side;
+            int empty = 0;
+            for (int c : cells) {
+                empty += c == ThreatEvaluator.EMPTY ? 1 : 0;
+            }
+            int value = empty == 0 ? DRAW : -solve(cells, ThreatEvaluator.opponent(side));
+            cells[cell] = ThreatEvaluator.EMPTY;
+            return value;
+        }
+
+        private int solve(int[] cells, int side, long x, long o) {
+            int empty = 0;
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (cells[cell] == ThreatEvaluator.EMPTY) {
+                    if (wins(cells, cell, side)) {
+                        return WIN;
+                    }
+                    empty++;
+                }
+            }
+            if (empty == 1) {
+                return DRAW;
+            }
+            long key = x | o << cellCount | Long.MIN_VALUE;
+            int slot = find(key);
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            int best = LOSS;
+            for (int cell = 0; cell < cellCount && best < WIN; cell++) {
+                if (cells[cell] != ThreatEvaluator.EMPTY) {
+                    continue;
+                }
+                cells[cell] = side;
+                int value = side == ThreatEvaluator.X
+                        ? -solve(cells, ThreatEvaluator.O, x | 1L << cell, o)
+                        : -solve(cells, ThreatEvaluator.X, x, o | 1L << cell);
+                cells[cell] = ThreatEvaluator.EMPTY;
+                best = Math.max(best, value);
+            }
+            if (size * 4 >= keys.length * 3) {
+                Arrays.fill(keys, 0L);
+                size = 0;
+            }
+            slot = find(key);
+            keys[slot] = key;
+            values[slot] = (byte) best;
+            size++;
+            return best;
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (keys[slot] != 0L && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    private final int boardSize;
+    private final int marksToWin;
+    private final int cellCount;
+    private final List<Engine> engines = new ArrayList<>();
+    private final ThreadLocal<Reference> references;
+    private final ThreadLocal<BatchEvaluator> batches;
+    private final LongAdder positions = new LongAdder();
+    private final LongAdder terminalMismatches = new LongAdder();
+    private final Queue<String> terminalRepros = new ConcurrentLinkedQueue<>();
+    private final int maxRepros;
+
+    public DifferentialHarness(int boardSize, int marksToWin, int maxRepros) {
+        if (boardSize > 5) {
+            throw new IllegalArgumentException("The reference solver handles boards up to 5x5");
+        }
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.cellCount = boardSize * boardSize;
+        this.maxRepros = maxRepros;
+        references = ThreadLocal.withInitial(() -> new Reference(boardSize, marksToWin, 1 << 21));
+        batches = ThreadLocal.withInitial(() -> new BatchEvaluator(boardSize, marksToWin));
+    }
+
+    public void addEngine(String name, boolean exact, Player player) {
+        engines.add(new Engine(name, exact, player));
+    }
+
+    // The engines as they stand; they are exact only on the classic game, where Hard is a full search.
+    public void addDefaultEngines(Set<String> only) {
+        boolean classic = boardSize == 3 && marksToWin == 3;
+        int n = boardSize;
+        int k = marksToWin;
+        Map<String, Player> players = new LinkedHashMap<>();
+        players.put("logic", (cells, side) -> new Answer(logicMove(cells, side), null));
+        players.put("hard", (cells, side) -> new Answer(EngineAI.hardMove(cells, n, k, side), null));
+        players.put("evaluate", (cells, side) -> {
+            EngineAI.Evaluation e = EngineAI.evaluate(cells, n, k, side);
+            return new Answer(e.cell, e.value);
+        });
+        players.put("search", (cells, side) -> {
+            EngineAI.Evaluation e = EngineAI.search(cells, n, k, side);
+            return new Answer(e.cell, e.value);
+        });
+        players.put("cached", this::cachedMove);
+        if (NTupleNetwork.forBoard(n, k) != null) {
+            players.put("expert", (cells, side) -> new Answer(NTupleNetwork.forBoard(n, k).bestMove(cells, side, null, 0), null));
+        }
+        for (Map.Entry<String, Player> e : players.entrySet()) {
+            if (only == null || only.contains(e.getKey())) {
+                addEngine(e.getKey(), classic && !e.getKey().equals("expert"), e.getValue());
+            }
+        }
+    }
+
+    // TicTacToeLogic on Hard, set up with the position and asked for the computer's move.
+    private int logicMove(int[] cells, int side) {
+        TicTacToeLogic logic = new TicTacToeLogic();
+        logic.init(boardSize);
+        logic.setMarksToWin(marksToWin);
+        logic.setDifficultyLevel(EngineAI.HARD);
+        logic.setComputerSymbol(TicTacToeLogic.sideToSymbol(side));
+        logic.setPlayerSymbol(TicTacToeLogic.sideToSymbol(ThreatEvaluator.opponent(side)));
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (cells[cell] != ThreatEvaluator.EMPTY) {
+                logic.makeMove(cell / boardSize, cell % boardSize, TicTacToeLogic.sideToSymbol(cells[cell]));
+            }
+        }
+        logic.switchTurn();
+        logic.computerMove();
+        int[] after = logic.toCells();
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (after[cell] != cells[cell]) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    // EngineAI.evaluate on a rotated or reflected copy, mapped back, so answers served from the
+    // solved-position cache for another orientation are checked too.
+    private Answer cachedMove(int[] cells, int side) {
+        int sym = (int) ((BatchEvaluator.pack(cells, ThreatEvaluator.X) * 31 + BatchEvaluator.pack(cells, ThreatEvaluator.O)) & 7);
+        int[] perm = BoardSymmetry.permutations(boardSize)[sym];
+        int[] turned = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            turned[perm[cell]] = cells[cell];
+        }
+        EngineAI.evaluate(turned.clone(), boardSize, marksToWin, side);
+        EngineAI.Evaluation e = EngineAI.evaluate(turned, boardSize, marksToWin, side);
+        return new Answer(e.cell < 0 ? -1 : BoardSymmetry.fromCanonical(e.cell, boardSize, sym), e.value);
+    }
+
+    // Description of how engine disagrees with the reference on the position, or null.
+    String disagreement(Engine engine, int[] cells, int side, Reference reference) {
+        Answer answer = engine.player.play(cells.clone(), side);
+        if (answer.cell < 0 || answer.cell >= cellCount || cells[answer.cell] != ThreatEvaluator.EMPTY) {
+            return "plays illegal cell " + answer.cell;
+        }
+        int value = reference.solve(cells, side);
+        int played = reference.moveClass(cells, side, answer.cell);
+        if (played < value) {
+            return "plays " + answer.cell + " (" + VALUE_NAMES[played + 1] + ") where the position is a " + VALUE_NAMES[value + 1];
+        }
+        if (answer.value != null && Arrays.asList(VALUE_NAMES).contains(answer.value) && !answer.value.equals(VALUE_NAMES[value + 1])) {
+            return "claims " + answer.value + " for a " + VALUE_NAMES[value + 1];
+        }
+        return null;
+    }
+
+    // Drops X/O pairs from a failing position as long as the engine still disagrees and the game
+    // is still being played.
+    int[] minimize(Engine engine, int[] cells, int side, Reference reference) {
+        int[] current = cells.clone();
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (int a = 0; a < cellCount && !shrunk; a++) {
+                if (current[a] != ThreatEvaluator.X) {
+                    continue;
+                }
+                for (int b = 0; b < cellCount && !shrunk; b++) {
+                    if (current[b] != ThreatEvaluator.O) {
+                        continue;
+                    }
+                    int[] candidate = current.clone();
+                    candidate[a] = ThreatEvaluator.EMPTY;
+                    candidate[b] = ThreatEvaluator.EMPTY;
+                    if (reference.status(candidate) == 0 && disagreement(engine, candidate, side, reference) != null) {
+                        current = candidate;
+                        shrunk = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    String render(int[] cells, int side) {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < boardSize; r++) {
+            sb.append("    ");
+            for (int c = 0; c < boardSize; c++) {
+                int cell = cells[r * boardSize + c];
+                sb.append(cell == ThreatEvaluator.X ? 'X' : cell == ThreatEvaluator.O ? 'O' : '.');
+            }
+            sb.append(r == 0 ? "    " + TicTacToeLogic.sideToSymbol(side) + " to move" : "").append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Runs every check on one position given as X and O bitboards.
+    void check(long x, long o) {
+        int[] cells = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            cells[cell] = (x >>> cell & 1) != 0 ? ThreatEvaluator.X : (o >>> cell & 1) != 0 ? ThreatEvaluator.O : ThreatEvaluator.EMPTY;
+        }
+        positions.increment();
+        Reference reference = references.get();
+        int status = reference.status(cells);
+        byte[] flags = new byte[1];
+        long[] legal = new long[1];
+        batches.get().evaluate(new long[]{x}, new long[]{o}, 0, 1, flags, legal);
+        if (flags[0] != status) {
+            terminalMismatches.increment();
+            if (terminalRepros.size() < maxRepros) {
+                terminalRepros.add("  batch flags " + flags[0] + ", reference " + status + "\n" + render(cells, Perft.sideToMove(cells)));
+            }
+        }
+        if (status != 0) {
+            return;
+        }
+        int side = Perft.sideToMove(cells);
+        for (Engine engine : engines) {
+            engine.checked.increment();
+            String problem = disagreement(engine, cells, side, reference);
+            if (problem == null) {
+                continue;
+            }
+            engine.disagreements.increment();
+            if (engine.exact || !problem.startsWith("plays ") || problem.startsWith("plays illegal")) {
+                engine.failures.increment();
+            }
+            if (engine.reproSlots.getAndIncrement() < maxRepros) {
+                int[] small = minimize(engine, cells, side, reference);
+                engine.repros.add("  " + disagreement(engine, small, side, reference) + "\n" + render(small, side));
+            }
+        }
+    }
+
+    // Every position reachable from the empty board, terminal ones included, as (x, o) pairs.
+    long[] reachable() {
+        Reference reference = references.get();
+        List<long[]> levels = new ArrayList<>();
+        long[] level = {0L, 0L};
+        int side = ThreatEvaluator.X;
+        int[] cells = new int[cellCount];
+        while (level.length > 0) {
+            levels.add(level);
+            Perft.PositionSet next = new Perft.PositionSet(level.length);
+            for (int p = 0; p < level.length; p += 2) {
+                for (int cell = 0; cell < cellCount; cell++) {
+                    cells[cell] = (level[p] >>> cell & 1) != 0 ? ThreatEvaluator.X
+                            : (level[p + 1] >>> cell & 1) != 0 ? ThreatEvaluator.O : ThreatEvaluator.EMPTY;
+                }
+                if (reference.status(cells) != 0) {
+                    continue;
+                }
+                for (int cell = 0; cell < cellCount; cell++) {
+                    if (cells[cell] == ThreatEvaluator.EMPTY) {
+                        next.add(side == ThreatEvaluator.X ? level[p] | 1L << cell : level[p],
+                                side == ThreatEvaluator.O ? level[p + 1] | 1L << cell : level[p + 1]);
+                    }
+                }
+            }
+            level = next.toArray();
+            side = ThreatEvaluator.opponent(side);
+        }
+        int total = 0;
+        for (long[] l : levels) {
+            total += l.length;
+        }
+        long[] all = new long[total];
+        int n = 0;
+        for (long[] l : levels) {
+            System.arraycopy(l, 0, all, n, l.length);
+            n += l.length;
+        }
+        return all;
+    }
+
+    // Position i of a seeded random sample: a random game cut after minStones or more moves, or
+    // where it ended.
+    long[] sample(long seed, int i, int minStones) {
+        Random rand = new Random(seed + i * 0x9E3779B97F4A7C15L);
+        int[] cells = new int[cellCount];
+        int stones = Math.min(cellCount - 1, minStones + rand.nextInt(Math.max(1, cellCount - minStones)));
+        int side = ThreatEvaluator.X;
+        Reference reference = references.get();
+        for (int s = 0; s < stones; s++) {
+            int cell = EngineAI.randomMove(cells, rand);
+            boolean won = reference.wins(cells, cell, side);
+            cells[cell] = side;
+            side = ThreatEvaluator.opponent(side);
+            if (won) {
+                break;
+            }
+        }
+        return new long[]{BatchEvaluator.pack(cells, ThreatEvaluator.X), BatchEvaluator.pack(cells, ThreatEvaluator.O)};
+    }
+
+    // True when no exact engine failed and terminal detection agreed everywhere.
+    boolean report(PrintStream out, long elapsedNanos) {
+        out.printf("%dx%d k%d: %d positions in %.1f s (%.0f positions/s)%n", boardSize, boardSize, marksToWin,
+                positions.sum(), elapsedNanos / 1e9, positions.sum() / (elapsedNanos / 1e9));
+        out.printf("%-10s %6s %12s %14s %10s%n", "engine", "exact", "checked", "disagreements", "failures");
+        out.printf("%-10s %6s %12d %14d %10d%n", "batch", "yes", positions.sum(), terminalMismatches.sum(), terminalMismatches.sum());
+        boolean ok = terminalMismatches.sum() == 0;
+        for (Engine engine : engines) {
+            out.printf("%-10s %6s %12d %14d %10d%n", engine.name, engine.exact ? "yes" : "no", engine.checked.sum(),
+                    engine.disagreements.sum(), engine.failures.sum());
+            ok &= engine.failures.sum() == 0;
+        }
+        for (String repro : terminalRepros) {
+            out.print("batch:" + repro.substring(1));
+        }
+        for (Engine engine : engines) {
+            for (String repro : engine.repros) {
+                out.print(engine.name + ":" + repro.substring(1));
+            }
+        }
+        return ok;
+    }
+
+    // Usage: java DifferentialHarness <size> <marksToWin> [--samples <n>] [--min-stones <n>] [--seed <n>]
+    //        [--threads <n>] [--engines logic,hard,evaluate,search,cached,expert] [--repros <n>]
+    // Without --samples every reachable position is checked; exits with status 1 on a failure.
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java DifferentialHarness <size> <marksToWin> [--samples <n>] [--min-stones <n>] [--seed <n>] [--threads <n>] [--engines <list>] [--repros <n>]");
+            return;
+        }
+        int size = Integer.parseInt(args[0]);
+        int marks = Integer.parseInt(args[1]);
+        int samples = 0;
+        int minStones = 0;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Set<String> only = null;
+        int maxRepros = 3;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--samples":
+                    samples = Integer.parseInt(args[++i]);
+                    break;
+                case "--min-stones":
+                    minStones = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--engines":
+                    only = new HashSet<>(Arrays.asList(args[++i].split(",")));
+                    break;
+                case "--repros":
+                    maxRepros = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        DifferentialHarness harness = new DifferentialHarness(size, marks, maxRepros);
+        harness.addDefaultEngines(only);
+        // The logic and engines log every step; keep that out of the report.
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        boolean ok;
+        try {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            if (samples == 0) {
+                long[] all = harness.reachable();
+                pool.submit(() -> IntStream.range(0, all.length / 2).parallel()
+                        .forEach(p -> harness.check(all[2 * p], all[2 * p + 1]))).get();
+            } else {
+                long s = seed;
+                int from = minStones;
+                int count = samples;
+                pool.submit(() -> IntStream.range(0, count).parallel().forEach(i -> {
+                    long[] position = harness.sample(s, i, from);
+                    harness.check(position[0], position[1]);
+                })).get();
+            }
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            ok = harness.report(out, elapsed);
+        } finally {
+            System.setOut(out);
+        }
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.*;
+
+// Headless versions of the Easy/Medium/Hard strategies in TicTacToeLogic.computerMove, working on
+// ThreatEvaluator-encoded cells so they can run without a TicTacToeLogic instance.
+public final class EngineAI {
+    public static final int EASY = 1;
+    public static final int MEDIUM = 2;
+    public static final int HARD = 3;
+    public static final int EXPERT = 4;     // trained n-tuple network where one exists, else Hard
+
+    private EngineAI() {
+    }
+
+    public static int chooseMove(int[] cells, int boardSize, int marksToWin, int side, int difficulty, Random rand) {
+        switch (difficulty) {
+            case EASY:
+                return randomMove(cells, rand);
+            case MEDIUM:
+                return mediumMove(cells, boardSize, marksToWin, side, rand);
+            case EXPERT:
+                return expertMove(cells, boardSize, marksToWin, side);
+            default:
+                return hardMove(cells, boardSize, marksToWin, side);
+        }
+    }
+
+    public static int randomMove(int[] cells, Random rand) {
+        int empty = 0;
+        for (int cell : cells) {
+            if (cell == ThreatEvaluator.EMPTY) {
+                empty++;
+            }
+        }
+        if (empty == 0) {
+            return -1;
+        }
+        int pick = rand.nextInt(empty);
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == ThreatEvaluator.EMPTY && pick-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static int mediumMove(int[] cells, int boardSize, int marksToWin, int side, Random rand) {
+        int move = winningCell(cells, boardSize, marksToWin, side);
+        if (move < 0) {
+            move = winningCell(cells, boardSize, marksToWin, ThreatEvaluator.opponent(side));
+        }
+        if (move < 0 && rand.nextDouble() < 0.7) {
+            int center = (boardSize / 2) * boardSize + boardSize / 2;
+            if (cells[center] == ThreatEvaluator.EMPTY) {
+                move = center;
+            } else {
+                int last = boardSize - 1;
+                int[] corners = {0, last, last * boardSize, last * boardSize + last};
+                int[] empty = new int[4];
+                int n = 0;
+                for (int corner : corners) {
+                    if (cells[corner] == ThreatEvaluator.EMPTY) {
+                        empty[n++] = corner;
+                    }
+                }
+                if (n > 0) {
+                    move = empty[rand.nextInt(n)];
+                }
+            }
+        }
+        return move >= 0 ? move : randomMove(cells, rand);
+    }
+
+    public static int hardMove(int[] cells, int boardSize, int marksToWin, int side) {
+        int move = bookMove(cells, boardSize, marksToWin);
+        if (move >= 0) {
+            return move;
+        }
+        return evaluate(cells, boardSize, marksToWin, side).cell;
+    }
+
+    // Opening-book move for the position, or -1 when there is no book or it has no entry. Hard
+    // always asks the book before the cache or a search.
+    public static int bookMove(int[] cells, int boardSize, int marksToWin) {
+        OpeningBook book = OpeningBook.forBoard(boardSize, marksToWin);
+        return book != null ? book.lookup(cells) : -1;
+    }
+
+    // Expert plays as Hard on boards without a trained network.
+    public static int effectiveLevel(int difficulty, int boardSize, int marksToWin) {
+        return difficulty == EXPERT && NTupleNetwork.forBoard(boardSize, marksToWin) == null ? HARD : difficulty;
+    }
+
+    public static int expertMove(int[] cells, int boardSize, int marksToWin, int side) {
+        NTupleNetwork network = NTupleNetwork.forBoard(boardSize, marksToWin);
+        if (network == null) {
+            return hardMove(cells, boardSize, marksToWin, side);
+        }
+        return network.bestMove(cells, side, null, 0);
+    }
+
+    // Hard move whose search stops at deadlineNanos (System.nanoTime); a search cut short still
+    // answers with its best move so far but is not cached, and neither is a heuristic score.
+    public static int hardMove(int[] cells, int boardSize, int marksToWin, int side, long deadlineNanos) {
+        int move = bookMove(cells, boardSize, marksToWin);
+        if (move >= 0) {
+            return move;
+        }
+        if (boardSize == 3 && marksToWin == 3) {
+            return evaluate(cells, boardSize, marksToWin, side).cell;
+        }
+        SolvedPositionCache cache = SolvedPositionCache.shared();
+        SolvedPositionCache.Solved solved = cache.get(cells, boardSize, marksToWin, side);
+        if (solved != null) {
+            return solved.cell;
+        }
+        HeuristicSearch search = new HeuristicSearch(boardSize, marksToWin);
+        search.setDeadline(deadlineNanos);
+        int cell = search.findBestMove(cells, side, boardSize <= 5 ? 4 : 3);
+        if (isProven(search)) {
+            cache.put(cells, boardSize, marksToWin, side, cell, search.getLastScore(), classify(search.getLastScore()));
+        }
+        return cell;
+    }
+
+    public static class Evaluation {
+        public final int cell;
+        public final int score;     // from the mover's point of view
+        public final String value;  // WIN, DRAW, LOSS or HEURISTIC
+        public final boolean proven; // value is exact, not the outcome of a pruned search
+
+        public Evaluation(int cell, int score, String value) {
+            this(cell, score, value, !value.equals("HEURISTIC"));
+        }
+
+        public Evaluation(int cell, int score, String value, boolean proven) {
+            this.cell = cell;
+            this.score = score;
+            this.value = value;
+            this.proven = proven;
+        }
+    }
+
+    // Hard move together with its evaluation, answered from the shared solved-position cache when
+    // any session has already solved this position (in any orientation).
+    public static Evaluation evaluate(int[] cells, int boardSize, int marksToWin, int side) {
+        SolvedPositionCache cache = SolvedPositionCache.shared();
+        SolvedPositionCache.Solved solved = cache.get(cells, boardSize, marksToWin, side);
+        if (solved != null) {
+            return new Evaluation(solved.cell, solved.score, solved.value);
+        }
+        Evaluation result = search(cells, boardSize, marksToWin, side);
+        if (result.proven) {
+            cache.put(cells, boardSize, marksToWin, side, result.cell, result.score, result.value);
+        }
+        return result;
+    }
+
+    // Uncached Hard search; exact for the classic game, heuristic beyond it.
+    static Evaluation search(int[] cells, int boardSize, int marksToWin, int side) {
+        if (boardSize == 3 && marksToWin == 3) {
+            int cell = perfectMove(cells, side);
+            if (cell < 0) {
+                return new Evaluation(-1, 0, "DRAW");
+            }
+            int score;
+            if (completesLine(cells, 3, 3, cell, side)) {
+                score = 10;
+            } else {
+                cells[cell] = side;
+                score = -negamax(cells, ThreatEvaluator.opponent(side), 1);
+                cells[cell] = ThreatEvaluator.EMPTY;
+            }
+            return new Evaluation(cell, score, score > 0 ? "WIN" : score < 0 ? "LOSS" : "DRAW");
+        }
+        HeuristicSearch search = new HeuristicSearch(boardSize, marksToWin);
+        int cell = search.findBestMove(cells, side, boardSize <= 5 ? 4 : 3);
+        int score = search.getLastScore();
+        return new Evaluation(cell, score, classify(score), isProven(search));
+    }
+
+    static String classify(int searchScore) {
+        return searchScore >= ThreatEvaluator.WIN_SCORE - 1000 ? "WIN" : searchScore <= -ThreatEvaluator.WIN_SCORE + 1000 ? "LOSS" : "HEURISTIC";
+    }
+
+    // Only proven values go into the solved-position cache: a depth-limited heuristic score is not
+    // an answer a deeper search (or a later ponder) should be held to, and a WIN or LOSS counts only
+    // when the search looked at every legal move.
+    static boolean isProven(HeuristicSearch search) {
+        return !search.wasAborted() && !search.wasPruned() && !classify(search.getLastScore()).equals("HEURISTIC");
+    }
+
+    // Cell that completes a line of marksToWin for side, or -1.
+    public static int winningCell(int[] cells, int boardSize, int marksToWin, int side) {
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] == ThreatEvaluator.EMPTY && completesLine(cells, boardSize, marksToWin, cell, side)) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    public static boolean completesLine(int[] cells, int boardSize, int marksToWin, int cell, int side) {
+        int row = cell / boardSize;
+        int col = cell % boardSize;
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] d : directions) {
+            int run = 1;
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int r = row + d[0] * sign;
+                int c = col + d[1] * sign;
+                while (r >= 0 && r < boardSize && c >= 0 && c < boardSize && cells[r * boardSize + c] == side) {
+                    run++;
+                    r += d[0] * sign;
+                    c += d[1] * sign;
+                }
+            }
+            if (run >= marksToWin) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Exact negamax for the classic 3x3 game, preferring the quickest win like findBestMove.
+    public static int perfectMove(int[] cells, int side) {
+        int best = -1;
+        int bestScore = Integer.MIN_VALUE;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != ThreatEvaluator.EMPTY) {
+                continue;
+            }
+            int score;
+            if (completesLine(cells, 3, 3, cell, side)) {
+                score = 10;
+            } else {
+                cells[cell] = side;
+                score = -negamax(cells, ThreatEvaluator.opponent(side), 1);
+                cells[cell] = ThreatEvaluator.EMPTY;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    private static int negamax(int[] cells, int side, int depth) {
+        int best = Integer.MIN_VALUE;
+        boolean moved = false;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != ThreatEvaluator.EMPTY) {
+                continue;
+            }
+            moved = true;
+            if (completesLine(cells, 3, 3, cell, side)) {
+                return 10 - depth;
+            }
+            cells[cell] = side;
+            int score = -negamax(cells, ThreatEvaluator.opponent(side), depth + 1);
+            cells[cell] = ThreatEvaluator.EMPTY;
+            best = Math.max(best, score);
+        }
+        return moved ? best : 0;
+    }
+}
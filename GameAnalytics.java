@@ -0,0 +1,243 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Aggregate statistics over a GameArchive that may be far larger than memory. games.dat is read
+// in chunks of whole records and each chunk is scanned on a fork-join worker into flat primitive
+// counters, which are summed once at the end. Records are decoded only as far as a statistic needs:
+// game length and outcome come from the header, the opening from the first move alone, and only
+// Medium games against the computer are replayed to look for missed forced blocks.
+public class GameAnalytics {
+    private static final int MAX_SIZE = TicTacToeLogic.MAX_BOARD_SIZE;
+    private static final int MAX_CELLS = MAX_SIZE * MAX_SIZE;
+    private static final int LEVELS = 8;
+    // Opening results, from the point of view of the side that made the first move.
+    private static final int OPENER_WINS = 0;
+    private static final int OPENER_LOSES = 1;
+    private static final int OPENING_DRAW = 2;
+
+    // Counters for one worker; indexes are computed so every statistic is one flat long[].
+    static final class Totals {
+        final long[] openings = new long[(MAX_SIZE + 1) * MAX_CELLS * 3];
+        final long[] lengthSum = new long[LEVELS * (MAX_SIZE + 1)];
+        final long[] lengthCount = new long[LEVELS * (MAX_SIZE + 1)];
+        long games;
+        long bytes;
+        long mediumGames;
+        long forcedBlocks;      // Medium to move, no win of its own, opponent threatening to win
+        long missedBlocks;      // ... and the opponent could still win right after Medium's move
+
+        void merge(Totals other) {
+            for (int i = 0; i < openings.length; i++) {
+                openings[i] += other.openings[i];
+            }
+            for (int i = 0; i < lengthSum.length; i++) {
+                lengthSum[i] += other.lengthSum[i];
+                lengthCount[i] += other.lengthCount[i];
+            }
+            games += other.games;
+            bytes += other.bytes;
+            mediumGames += other.mediumGames;
+            forcedBlocks += other.forcedBlocks;
+            missedBlocks += other.missedBlocks;
+        }
+    }
+
+    private final int threads;
+    private final int chunkBytes;
+    private long elapsedNanos;
+
+    public GameAnalytics(int threads, int chunkBytes) {
+        this.threads = threads;
+        this.chunkBytes = chunkBytes;
+    }
+
+    public Totals run(GameArchive archive) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        // At most two chunks per worker are read ahead, so memory stays flat however big the archive.
+        Semaphore inFlight = new Semaphore(threads * 2);
+        ConcurrentLinkedQueue<Totals> idle = new ConcurrentLinkedQueue<>();
+        List<Totals> all = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+        try {
+            archive.forEachChunk(chunkBytes, (chunk, offset) -> {
+                inFlight.acquireUninterruptibly();
+                pool.execute(() -> {
+                    Totals totals = idle.poll();
+                    if (totals == null) {
+                        totals = new Totals();
+                        all.add(totals);
+                    }
+                    try {
+                        scan(chunk, totals);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        idle.add(totals);
+                        inFlight.release();
+                    }
+                });
+            });
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure.get() != null) {
+            throw new IOException("Analytics scan failed", failure.get());
+        }
+        Totals result = new Totals();
+        for (Totals totals : all) {
+            result.merge(totals);
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static void scan(ByteBuffer chunk, Totals totals) {
+        for (int position = 0, length; (length = GameArchive.recordLength(chunk, position)) > 0; position += length) {
+            int size = GameArchive.boardSizeAt(chunk, position);
+            int moves = GameArchive.moveCountAt(chunk, position);
+            int outcome = GameArchive.outcomeAt(chunk, position);
+            int level = Math.min(LEVELS - 1, Math.max(0, GameArchive.difficultyAt(chunk, position)));
+            totals.games++;
+            totals.bytes += length;
+            totals.lengthSum[level * (MAX_SIZE + 1) + size] += moves;
+            totals.lengthCount[level * (MAX_SIZE + 1) + size]++;
+            int opening = GameArchive.firstCellAt(chunk, position);
+            if (opening >= 0) {
+                int opener = GameArchive.firstSideAt(chunk, position);
+                int result = outcome == GameArchive.DRAW ? OPENING_DRAW
+                        : outcome == (opener == ThreatEvaluator.X ? GameArchive.X_WINS : GameArchive.O_WINS)
+                        ? OPENER_WINS : OPENER_LOSES;
+                totals.openings[(size * MAX_CELLS + opening) * 3 + result]++;
+            }
+            int computer = GameArchive.computerSideAt(chunk, position);
+            if (level == EngineAI.MEDIUM && computer != ThreatEvaluator.EMPTY) {
+                totals.mediumGames++;
+                countForcedBlocks(GameArchive.decode(chunk, position, 0), computer, totals);
+            }
+        }
+    }
+
+    private static void countForcedBlocks(GameArchive.GameRecord record, int computer, Totals totals) {
+        int n = record.boardSize;
+        int k = record.marksToWin;
+        int human = ThreatEvaluator.opponent(computer);
+        int[] cells = new int[n * n];
+        for (short move : record.moves) {
+            int side = GameTree.sideOf(move);
+            boolean forced = side == computer && EngineAI.winningCell(cells, n, k, computer) < 0
+                    && EngineAI.winningCell(cells, n, k, human) >= 0;
+            cells[GameTree.cellOf(move)] = side;
+            if (forced) {
+                totals.forcedBlocks++;
+                if (EngineAI.winningCell(cells, n, k, human) >= 0) {
+                    totals.missedBlocks++;
+                }
+            }
+        }
+    }
+
+    public double gamesPerSecond(Totals totals) {
+        return totals.games / (elapsedNanos / 1e9);
+    }
+
+    String toJson(Totals t) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "{\"games\":%d,\"bytes\":%d,\"threads\":%d,\"seconds\":%.3f,\"gamesPerSecond\":%.0f,",
+                t.games, t.bytes, threads, elapsedNanos / 1e9, gamesPerSecond(t)));
+        sb.append("\n\"openings\":[");
+        String separator = "\n  ";
+        for (int size = 3; size <= MAX_SIZE; size++) {
+            for (int cell = 0; cell < size * size; cell++) {
+                int base = (size * MAX_CELLS + cell) * 3;
+                long games = t.openings[base] + t.openings[base + 1] + t.openings[base + 2];
+                if (games > 0) {
+                    sb.append(separator).append(String.format(Locale.ROOT,
+                            "{\"size\":%d,\"row\":%d,\"col\":%d,\"games\":%d,\"winRate\":%.4f,\"lossRate\":%.4f,\"drawRate\":%.4f}",
+                            size, cell / size, cell % size, games, (double) t.openings[base + OPENER_WINS] / games,
+                            (double) t.openings[base + OPENER_LOSES] / games, (double) t.openings[base + OPENING_DRAW] / games));
+                    separator = ",\n  ";
+                }
+            }
+        }
+        sb.append("],\n\"lengths\":[");
+        separator = "\n  ";
+        for (int level = 0; level < LEVELS; level++) {
+            for (int size = 3; size <= MAX_SIZE; size++) {
+                long count = t.lengthCount[level * (MAX_SIZE + 1) + size];
+                if (count > 0) {
+                    sb.append(separator).append(String.format(Locale.ROOT,
+                            "{\"difficulty\":%d,\"size\":%d,\"games\":%d,\"averageMoves\":%.3f}", level, size, count,
+                            (double) t.lengthSum[level * (MAX_SIZE + 1) + size] / count));
+                    separator = ",\n  ";
+                }
+            }
+        }
+        sb.append("],\n").append(String.format(Locale.ROOT,
+                "\"medium\":{\"games\":%d,\"forcedBlocks\":%d,\"missedBlocks\":%d,\"missRate\":%.4f}}\n", t.mediumGames,
+                t.forcedBlocks, t.missedBlocks, t.forcedBlocks == 0 ? 0.0 : (double) t.missedBlocks / t.forcedBlocks));
+        return sb.toString();
+    }
+
+    // One table with a section column, so it loads into a spreadsheet or dataframe as is.
+    String toCsv(Totals t) {
+        StringBuilder sb = new StringBuilder("section,size,key,games,value1,value2,value3\n");
+        for (int size = 3; size <= MAX_SIZE; size++) {
+            for (int cell = 0; cell < size * size; cell++) {
+                int base = (size * MAX_CELLS + cell) * 3;
+                long games = t.openings[base] + t.openings[base + 1] + t.openings[base + 2];
+                if (games > 0) {
+                    sb.append(String.format(Locale.ROOT, "opening,%d,%d,%d,%.4f,%.4f,%.4f%n", size, cell, games,
+                            (double) t.openings[base + OPENER_WINS] / games, (double) t.openings[base + OPENER_LOSES] / games,
+                            (double) t.openings[base + OPENING_DRAW] / games));
+                }
+            }
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            for (int size = 3; size <= MAX_SIZE; size++) {
+                long count = t.lengthCount[level * (MAX_SIZE + 1) + size];
+                if (count > 0) {
+                    sb.append(String.format(Locale.ROOT, "length,%d,%d,%d,%.3f,,%n", size, level, count,
+                            (double) t.lengthSum[level * (MAX_SIZE + 1) + size] / count));
+                }
+            }
+        }
+        sb.append(String.format(Locale.ROOT, "medium_blocks,,%d,%d,%d,%d,%.4f%n", EngineAI.MEDIUM, t.mediumGames,
+                t.forcedBlocks, t.missedBlocks, t.forcedBlocks == 0 ? 0.0 : (double) t.missedBlocks / t.forcedBlocks));
+        return sb.toString();
+    }
+
+    // Usage: java GameAnalytics <archiveDir> [json|csv] [output] [threads]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java GameAnalytics <archiveDir> [json|csv] [output] [threads]");
+            return;
+        }
+        String format = args.length > 1 ? args[1] : "json";
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        GameAnalytics analytics = new GameAnalytics(threads, Integer.getInteger("ttt.analytics.chunkBytes", 1 << 20));
+        try (GameArchive archive = new GameArchive(Paths.get(args[0]), false)) {
+            Totals totals = analytics.run(archive);
+            String report = format.equals("csv") ? analytics.toCsv(totals) : analytics.toJson(totals);
+            if (args.length > 2) {
+                Files.write(Paths.get(args[2]), report.getBytes(StandardCharsets.UTF_8));
+                System.out.println("Report written to " + args[2]);
+            } else {
+                System.out.print(report);
+            }
+            // On stderr, so a report printed to stdout stays machine-readable.
+            System.err.printf(Locale.ROOT, "%d games in %.1f ms on %d threads: %.0f games/sec%n", totals.games,
+                    analytics.elapsedNanos / 1e6, threads, analytics.gamesPerSecond(totals));
+        }
+    }
+}
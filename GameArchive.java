@@ -0,0 +1,695 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+// Append-only archive of finished rounds with an index from canonical position to the games that
+// reached it. games.dat holds one record per game:
+//   [size:u8][marksToWin:u8][flags:u8][difficulty:u8][moves:u16][payload length:u16][payload]
+// flags holds the outcome (bits 0-1), the side that moved first (bit 2), the encoding (bit 3) and
+// the computer's side (bits 4-5, 0 when both sides were human).
+// Plain payloads store each move as a cell index (one byte, two above 16x16). Rank-coded payloads
+// store each move as its rank among the empty cells ordered by distance to the previous move,
+// Elias-gamma coded, which is what most games compress well under since play stays local.
+// positions.idx is a memory-mapped open-addressing table with one entry per canonical position:
+//   [key:u64][last posting:u64][draws:u32][X wins:u32][O wins:u32][unused:u32]
+// and postings.dat chains the games behind each position as [game offset:u64][previous posting:u64],
+// newest first. Outcome counts are answered from the entry alone; listing the games walks the chain.
+public class GameArchive implements Closeable {
+    public static final int DRAW = 0;
+    public static final int X_WINS = 1;
+    public static final int O_WINS = 2;
+
+    private static final int DATA_MAGIC = 0x54544741;    // "TTGA"
+    private static final int INDEX_MAGIC = 0x54545049;   // "TTPI"
+    private static final int INDEX_HEADER = 32;
+    private static final int POSTINGS_MAGIC = 0x54545050; // "TTPP"
+    private static final int ENTRY_SIZE = 32;
+    private static final int POSTING_SIZE = 16;
+    private static final int FLAG_X_FIRST = 4;
+    private static final int FLAG_RANK_CODED = 8;
+    private static final int COMPUTER_SHIFT = 4;
+    private static final int CHECKPOINT_INTERVAL = 1024;
+
+    public static final class GameRecord {
+        public final long offset;
+        public final int boardSize;
+        public final int marksToWin;
+        public final int difficulty;
+        public final int computerSide;  // ThreatEvaluator.EMPTY when both sides were human
+        public final int outcome;
+        public final short[] moves;     // GameTree.pack(cell, side)
+
+        GameRecord(long offset, int boardSize, int marksToWin, int difficulty, int computerSide, int outcome,
+                   short[] moves) {
+            this.offset = offset;
+            this.boardSize = boardSize;
+            this.marksToWin = marksToWin;
+            this.difficulty = difficulty;
+            this.computerSide = computerSide;
+            this.outcome = outcome;
+            this.moves = moves;
+        }
+    }
+
+    private final Path directory;
+    private final FileChannel data;
+    private final FileChannel postings;
+    private final boolean rankCoded;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int entries;
+    private long gameCount;
+    private long[] checkpoints = {8};   // checkpoints[i] is the offset of game i * CHECKPOINT_INTERVAL
+    private int checkpointCount = 1;
+
+    public GameArchive(Path directory, boolean rankCoded) throws IOException {
+        this.directory = directory;
+        this.rankCoded = rankCoded;
+        Files.createDirectories(directory);
+        data = FileChannel.open(directory.resolve("games.dat"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (data.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(DATA_MAGIC).putInt(1);
+            header.flip();
+            data.write(header, 0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            data.read(header, 0);
+            if (header.getInt(0) != DATA_MAGIC) {
+                throw new IOException("Not a game archive: " + directory);
+            }
+        }
+        postings = FileChannel.open(directory.resolve("postings.dat"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (postings.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(POSTINGS_MAGIC).putInt(1);
+            header.flip();
+            postings.write(header, 0);
+            Files.deleteIfExists(directory.resolve("positions.idx"));
+        }
+        openIndex(directory.resolve("positions.idx"), 1 << 12);
+        catchUp();
+    }
+
+    private void openIndex(Path file, int minCapacity) throws IOException {
+        indexChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (indexChannel.size() >= INDEX_HEADER) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER);
+            indexChannel.read(header, 0);
+            if (header.getInt(0) == INDEX_MAGIC) {
+                capacity = header.getInt(4);
+                index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + (long) capacity * ENTRY_SIZE);
+                entries = index.getInt(8);
+                gameCount = index.getLong(24);
+                return;
+            }
+        }
+        capacity = minCapacity;
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + (long) capacity * ENTRY_SIZE);
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, capacity);
+        index.putInt(8, 0);
+        index.putLong(16, 8);     // data offset indexed so far
+        index.putLong(24, 0);
+        entries = 0;
+        gameCount = 0;
+    }
+
+    // Indexes records appended after the last indexed offset, e.g. after a crash between the
+    // data write and the index update.
+    private void catchUp() throws IOException {
+        long offset = index.getLong(16);
+        long end = data.size();
+        while (offset < end) {
+            GameRecord record = read(offset);
+            if (record == null) {
+                // Torn final record: cut it off.
+                data.truncate(offset);
+                break;
+            }
+            indexGame(record);
+            offset = nextOffset(offset);
+            index.putLong(16, offset);
+        }
+    }
+
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    public long getDataSize() throws IOException {
+        return data.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Offset of game number game (from 0). Headers are walked, a chunk at a time, from the nearest
+    // checkpoint before it; every CHECKPOINT_INTERVAL-th offset passed is kept, so once the archive
+    // has been walked that far a seek anywhere reads at most CHECKPOINT_INTERVAL headers.
+    public synchronized long gameOffset(long game) throws IOException {
+        if (game < 0 || game >= gameCount) {
+            throw new IndexOutOfBoundsException("No game " + game + " in an archive of " + gameCount);
+        }
+        int checkpoint = (int) Math.min(game / CHECKPOINT_INTERVAL, checkpointCount - 1);
+        long offset = checkpoints[checkpoint];
+        long at = (long) checkpoint * CHECKPOINT_INTERVAL;
+        ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+        long chunkStart = offset;
+        chunk.limit(0);
+        while (at < game) {
+            if (offset + 8 > chunkStart + chunk.limit()) {
+                chunk.clear();
+                data.read(chunk, offset);
+                chunk.flip();
+                chunkStart = offset;
+                if (chunk.limit() < 8) {
+                    throw new EOFException("Game " + at + " runs past the end of the archive");
+                }
+            }
+            offset += 8 + (chunk.getShort((int) (offset - chunkStart) + 6) & 0xffff);
+            at++;
+            if (at % CHECKPOINT_INTERVAL == 0 && at / CHECKPOINT_INTERVAL == checkpointCount) {
+                if (checkpointCount == checkpoints.length) {
+                    checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                }
+                checkpoints[checkpointCount++] = offset;
+            }
+        }
+        return offset;
+    }
+
+    public long append(int boardSize, int marksToWin, int difficulty, int outcome, short[] moves) throws IOException {
+        return append(boardSize, marksToWin, difficulty, ThreatEvaluator.EMPTY, outcome, moves);
+    }
+
+    // Appends a finished game and indexes every position it passed through; returns its offset.
+    public synchronized long append(int boardSize, int marksToWin, int difficulty, int computerSide, int outcome,
+                                    short[] moves) throws IOException {
+        byte[] payload = rankCoded ? encodeRanks(boardSize, moves) : encodePlain(boardSize, moves);
+        int firstSide = moves.length > 0 ? GameTree.sideOf(moves[0]) : ThreatEvaluator.X;
+        int flags = outcome | (firstSide == ThreatEvaluator.X ? FLAG_X_FIRST : 0) | (rankCoded ? FLAG_RANK_CODED : 0)
+                | computerSide << COMPUTER_SHIFT;
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.put((byte) boardSize).put((byte) marksToWin).put((byte) flags).put((byte) difficulty)
+                .putShort((short) moves.length).putShort((short) payload.length).put(payload);
+        record.flip();
+        long offset = data.size();
+        while (record.hasRemaining()) {
+            data.write(record, offset + record.position());
+        }
+        indexGame(new GameRecord(offset, boardSize, marksToWin, difficulty, computerSide, outcome, moves));
+        index.putLong(16, offset + 8 + payload.length);
+        return offset;
+    }
+
+    private long nextOffset(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        data.read(header, offset);
+        return offset + 8 + (header.getShort(6) & 0xffff);
+    }
+
+    private void indexGame(GameRecord record) throws IOException {
+        int n = record.boardSize;
+        long[] keys = BoardSymmetry.keys(new int[n * n], n);
+        long[] positions = new long[record.moves.length];
+        int count = 0;
+        for (short move : record.moves) {
+            BoardSymmetry.update(keys, n, GameTree.cellOf(move), GameTree.sideOf(move));
+            long key = positionKey(keys, record.marksToWin);
+            boolean repeated = false;
+            for (int i = 0; i < count && !repeated; i++) {
+                repeated = positions[i] == key;
+            }
+            if (!repeated) {
+                positions[count++] = key;
+            }
+        }
+        // One write for all of the game's postings, then link each into its position's chain.
+        long base = postings.size();
+        ByteBuffer chain = ByteBuffer.allocate(count * POSTING_SIZE);
+        for (int i = 0; i < count; i++) {
+            int entry = entryFor(positions[i]);
+            long posting = base + (long) i * POSTING_SIZE;
+            chain.putLong(record.offset).putLong(index.getLong(entry + 8));
+            index.putLong(entry + 8, posting);
+            int counter = entry + 16 + 4 * record.outcome;
+            index.putInt(counter, index.getInt(counter) + 1);
+        }
+        chain.flip();
+        while (chain.hasRemaining()) {
+            postings.write(chain, base + chain.position());
+        }
+        gameCount++;
+        index.putLong(24, gameCount);
+    }
+
+    private static long positionKey(long[] keys, int marksToWin) {
+        return keys[BoardSymmetry.minIndex(keys)] * 31 + marksToWin;
+    }
+
+    private static int slotOf(long key, int capacity) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & (capacity - 1);
+    }
+
+    // Byte offset of the entry for key in the index, or -1 if the position was never reached.
+    private int find(long key) {
+        int slot = slotOf(key, capacity);
+        while (true) {
+            int base = INDEX_HEADER + slot * ENTRY_SIZE;
+            if (index.getLong(base + 8) == 0) {
+                return -1;
+            }
+            if (index.getLong(base) == key) {
+                return base;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    // Entry for key, claiming an empty slot (with no postings yet) if it is new.
+    private int entryFor(long key) throws IOException {
+        int found = find(key);
+        if (found >= 0) {
+            return found;
+        }
+        if ((entries + 1) * 10L > capacity * 7L) {
+            grow();
+        }
+        int slot = slotOf(key, capacity);
+        while (index.getLong(INDEX_HEADER + slot * ENTRY_SIZE + 8) != 0) {
+            slot = (slot + 1) & (capacity - 1);
+        }
+        int base = INDEX_HEADER + slot * ENTRY_SIZE;
+        index.putLong(base, key);
+        index.putLong(base + 8, -1);      // claimed but no postings; 0 marks an empty slot
+        entries++;
+        index.putInt(8, entries);
+        return base;
+    }
+
+    // Rehashes into a table twice the size, written beside the old one and renamed over it.
+    private void grow() throws IOException {
+        Path file = directory.resolve("positions.idx");
+        Path temp = directory.resolve("positions.idx.tmp");
+        MappedByteBuffer old = index;
+        int oldCapacity = capacity;
+        Files.deleteIfExists(temp);
+        FileChannel oldChannel = indexChannel;
+        openIndex(temp, oldCapacity * 2);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int from = INDEX_HEADER + slot * ENTRY_SIZE;
+            if (old.getLong(from + 8) == 0) {
+                continue;
+            }
+            int to = slotOf(old.getLong(from), capacity);
+            while (index.getLong(INDEX_HEADER + to * ENTRY_SIZE + 8) != 0) {
+                to = (to + 1) & (capacity - 1);
+            }
+            for (int i = 0; i < ENTRY_SIZE; i += 8) {
+                index.putLong(INDEX_HEADER + to * ENTRY_SIZE + i, old.getLong(from + i));
+            }
+        }
+        entries = old.getInt(8);
+        index.putInt(8, entries);
+        index.putLong(16, old.getLong(16));
+        gameCount = old.getLong(24);
+        index.putLong(24, gameCount);
+        index.force();
+        oldChannel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Offsets of all games that reached this position (in any orientation), newest first.
+    public synchronized long[] findGames(int[] cells, int boardSize, int marksToWin) throws IOException {
+        int entry = find(positionKey(BoardSymmetry.keys(cells, boardSize), marksToWin));
+        if (entry < 0) {
+            return new long[0];
+        }
+        long[] found = new long[index.getInt(entry + 16) + index.getInt(entry + 20) + index.getInt(entry + 24)];
+        int count = 0;
+        ByteBuffer posting = ByteBuffer.allocate(POSTING_SIZE);
+        for (long next = index.getLong(entry + 8); next > 0 && count < found.length; next = posting.getLong(8)) {
+            posting.clear();
+            while (posting.hasRemaining()) {
+                if (postings.read(posting, next + posting.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            found[count++] = posting.getLong(0);
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    // Outcome counts {draws, X wins, O wins} over the games that reached this position.
+    public synchronized int[] outcomes(int[] cells, int boardSize, int marksToWin) {
+        int entry = find(positionKey(BoardSymmetry.keys(cells, boardSize), marksToWin));
+        if (entry < 0) {
+            return new int[3];
+        }
+        return new int[]{index.getInt(entry + 16), index.getInt(entry + 20), index.getInt(entry + 24)};
+    }
+
+    private ByteBuffer readHeader(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (header.hasRemaining()) {
+            if (data.read(header, offset + header.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return header;
+    }
+
+    // Decodes the game at offset, or null if the record is incomplete.
+    public GameRecord read(long offset) throws IOException {
+        if (offset + 8 > data.size()) {
+            return null;
+        }
+        ByteBuffer header = readHeader(offset);
+        int length = header.getShort(6) & 0xffff;
+        if (header.get(0) < 3 || offset + 8 + length > data.size()) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(8 + length).put(header.flip());
+        while (record.hasRemaining()) {
+            data.read(record, offset + record.position());
+        }
+        return decode(record, 0, offset);
+    }
+
+    // Length of the complete record at position in buffer, or -1 if it runs past the limit.
+    static int recordLength(ByteBuffer buffer, int position) {
+        if (position + 8 > buffer.limit() || buffer.get(position) < 3) {
+            return -1;
+        }
+        int length = 8 + (buffer.getShort(position + 6) & 0xffff);
+        return position + length <= buffer.limit() ? length : -1;
+    }
+
+    // Header fields of the record at position, read without decoding its moves.
+    static int boardSizeAt(ByteBuffer buffer, int position) {
+        return buffer.get(position);
+    }
+
+    static int marksToWinAt(ByteBuffer buffer, int position) {
+        return buffer.get(position + 1);
+    }
+
+    static int outcomeAt(ByteBuffer buffer, int position) {
+        return buffer.get(position + 2) & 3;
+    }
+
+    static int firstSideAt(ByteBuffer buffer, int position) {
+        return (buffer.get(position + 2) & FLAG_X_FIRST) != 0 ? ThreatEvaluator.X : ThreatEvaluator.O;
+    }
+
+    static int computerSideAt(ByteBuffer buffer, int position) {
+        return (buffer.get(position + 2) >> COMPUTER_SHIFT) & 3;
+    }
+
+    static int difficultyAt(ByteBuffer buffer, int position) {
+        return buffer.get(position + 3);
+    }
+
+    static int moveCountAt(ByteBuffer buffer, int position) {
+        return buffer.getShort(position + 4) & 0xffff;
+    }
+
+    // First cell played, decoding only the first move; -1 for an empty game.
+    static int firstCellAt(ByteBuffer buffer, int position) {
+        int size = boardSizeAt(buffer, position);
+        if (moveCountAt(buffer, position) == 0) {
+            return -1;
+        }
+        if ((buffer.get(position + 2) & FLAG_RANK_CODED) == 0) {
+            return size * size > 256 ? buffer.getShort(position + 8) & 0xffff : buffer.get(position + 8) & 0xff;
+        }
+        byte[] head = new byte[Math.min(8, buffer.getShort(position + 6) & 0xffff)];
+        buffer.get(position + 8, head);
+        return rankOrder(size, new boolean[size * size], -1)[new BitReader(head).readGamma() - 1];
+    }
+
+    // Decodes the complete record at position in buffer, which was stored at offset in games.dat.
+    static GameRecord decode(ByteBuffer buffer, int position, long offset) {
+        int size = boardSizeAt(buffer, position);
+        int flags = buffer.get(position + 2);
+        int count = moveCountAt(buffer, position);
+        byte[] payload = new byte[buffer.getShort(position + 6) & 0xffff];
+        buffer.get(position + 8, payload);
+        int[] cells = (flags & FLAG_RANK_CODED) != 0 ? decodeRanks(size, count, payload)
+                : decodePlain(size, count, payload);
+        short[] moves = new short[count];
+        int side = firstSideAt(buffer, position);
+        for (int i = 0; i < count; i++) {
+            moves[i] = GameTree.pack(cells[i], side);
+            side = ThreatEvaluator.opponent(side);
+        }
+        return new GameRecord(offset, size, marksToWinAt(buffer, position), difficultyAt(buffer, position),
+                computerSideAt(buffer, position), flags & 3, moves);
+    }
+
+    // Visits every archived game in order without holding more than one in memory.
+    public void forEach(java.util.function.Consumer<GameRecord> action) throws IOException {
+        long end = data.size();
+        for (long offset = 8; offset < end; offset = nextOffset(offset)) {
+            GameRecord record = read(offset);
+            if (record == null) {
+                break;
+            }
+            action.accept(record);
+        }
+    }
+
+    // Reads games.dat in buffers of about chunkBytes that each hold only whole records, starting at
+    // position 0, for scans that decode on their own threads. The chunk's file offset is passed along.
+    public void forEachChunk(int chunkBytes, java.util.function.ObjLongConsumer<ByteBuffer> action) throws IOException {
+        long end = data.size();
+        long offset = 8;
+        while (offset < end) {
+            ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(Math.max(chunkBytes, 1 << 16), end - offset));
+            while (chunk.hasRemaining()) {
+                if (data.read(chunk, offset + chunk.position()) < 0) {
+                    break;
+                }
+            }
+            chunk.flip();
+            int whole = 0;
+            for (int length; (length = recordLength(chunk, whole)) > 0; ) {
+                whole += length;
+            }
+            if (whole == 0) {
+                break;      // torn final record
+            }
+            chunk.limit(whole);
+            action.accept(chunk, offset);
+            offset += whole;
+        }
+    }
+
+    private static byte[] encodePlain(int boardSize, short[] moves) {
+        boolean wide = boardSize * boardSize > 256;
+        ByteBuffer out = ByteBuffer.allocate(moves.length * (wide ? 2 : 1));
+        for (short move : moves) {
+            if (wide) {
+                out.putShort((short) GameTree.cellOf(move));
+            } else {
+                out.put((byte) GameTree.cellOf(move));
+            }
+        }
+        return out.array();
+    }
+
+    private static int[] decodePlain(int boardSize, int count, byte[] payload) {
+        boolean wide = boardSize * boardSize > 256;
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        int[] cells = new int[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = wide ? in.getShort() & 0xffff : in.get() & 0xff;
+        }
+        return cells;
+    }
+
+    // Empty cells ordered by Chebyshev distance to the previous move (row-major within a ring);
+    // the first move is ordered from the centre.
+    private static int[] rankOrder(int boardSize, boolean[] taken, int previous) {
+        int anchor = previous >= 0 ? previous : (boardSize / 2) * boardSize + boardSize / 2;
+        int ar = anchor / boardSize;
+        int ac = anchor % boardSize;
+        int[] order = new int[boardSize * boardSize];
+        int count = 0;
+        for (int ring = 0; ring < boardSize; ring++) {
+            for (int r = Math.max(0, ar - ring); r <= Math.min(boardSize - 1, ar + ring); r++) {
+                for (int c = Math.max(0, ac - ring); c <= Math.min(boardSize - 1, ac + ring); c++) {
+                    if (Math.max(Math.abs(r - ar), Math.abs(c - ac)) == ring && !taken[r * boardSize + c]) {
+                        order[count++] = r * boardSize + c;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    private static byte[] encodeRanks(int boardSize, short[] moves) {
+        BitWriter out = new BitWriter();
+        boolean[] taken = new boolean[boardSize * boardSize];
+        int previous = -1;
+        for (short move : moves) {
+            int cell = GameTree.cellOf(move);
+            int[] order = rankOrder(boardSize, taken, previous);
+            int rank = 0;
+            while (order[rank] != cell) {
+                rank++;
+            }
+            out.writeGamma(rank + 1);
+            taken[cell] = true;
+            previous = cell;
+        }
+        return out.toByteArray();
+    }
+
+    private static int[] decodeRanks(int boardSize, int count, byte[] payload) {
+        BitReader in = new BitReader(payload);
+        boolean[] taken = new boolean[boardSize * boardSize];
+        int[] cells = new int[count];
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            int[] order = rankOrder(boardSize, taken, previous);
+            cells[i] = order[in.readGamma() - 1];
+            taken[cells[i]] = true;
+            previous = cells[i];
+        }
+        return cells;
+    }
+
+    private static final class BitWriter {
+        private byte[] bytes = new byte[16];
+        private int bits;
+
+        void write(int bit) {
+            if (bits >> 3 == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            if (bit != 0) {
+                bytes[bits >> 3] |= (byte) (0x80 >>> (bits & 7));
+            }
+            bits++;
+        }
+
+        // Elias gamma: floor(log2 v) zeros, then v in binary.
+        void writeGamma(int value) {
+            int width = 32 - Integer.numberOfLeadingZeros(value);
+            for (int i = 1; i < width; i++) {
+                write(0);
+            }
+            for (int i = width - 1; i >= 0; i--) {
+                write((value >>> i) & 1);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, (bits + 7) >> 3);
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] bytes;
+        private int bits;
+
+        BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int read() {
+            int bit = (bytes[bits >> 3] >>> (7 - (bits & 7))) & 1;
+            bits++;
+            return bit;
+        }
+
+        int readGamma() {
+            int zeros = 0;
+            while (read() == 0) {
+                zeros++;
+            }
+            int value = 1;
+            for (int i = 0; i < zeros; i++) {
+                value = (value << 1) | read();
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index.force();
+        indexChannel.close();
+        postings.close();
+        data.close();
+    }
+
+    // Usage: java GameArchive <dir> stats
+    //        java GameArchive <dir> query <size> <marksToWin> <board>   (board as X, O and '.')
+    //        java GameArchive <dir> generate <games> [rank]            (random player against the computer, for testing)
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java GameArchive <dir> stats | query <size> <k> <board> | generate <games> [rank]");
+            return;
+        }
+        boolean rank = args.length > 3 && args[3].equals("rank");
+        try (GameArchive archive = new GameArchive(Paths.get(args[0]), rank)) {
+            switch (args[1]) {
+                case "generate": {
+                    int games = Integer.parseInt(args[2]);
+                    Random rand = new Random(1);
+                    long start = System.nanoTime();
+                    for (int g = 0; g < games; g++) {
+                        int difficulty = 1 + g % 3;
+                        GameSession session = new GameSession(g, 3, 3, difficulty, true, 1);
+                        while (session.getStatus() == GameSession.ONGOING) {
+                            if (session.needsComputerMove()) {
+                                session.computerMove(rand);
+                            } else {
+                                int cell = EngineAI.randomMove(session.toCells(), rand);
+                                session.play(cell / 3, cell % 3);
+                            }
+                        }
+                        short[] moves = new short[session.getMoveCount()];
+                        for (int i = 0; i < moves.length; i++) {
+                            moves[i] = session.getMove(i);
+                        }
+                        int outcome = session.getStatus() == GameSession.X_WINS ? X_WINS
+                                : session.getStatus() == GameSession.O_WINS ? O_WINS : DRAW;
+                        archive.append(3, 3, difficulty, ThreatEvaluator.O, outcome, moves);
+                    }
+                    System.out.printf("Appended %d games in %.1f ms%n", games, (System.nanoTime() - start) / 1e6);
+                    break;
+                }
+                case "query": {
+                    int size = Integer.parseInt(args[2]);
+                    int marks = Integer.parseInt(args[3]);
+                    int[] cells = new int[size * size];
+                    for (int i = 0; i < cells.length; i++) {
+                        char c = Character.toUpperCase(args[4].charAt(i));
+                        cells[i] = c == 'X' ? ThreatEvaluator.X : c == 'O' ? ThreatEvaluator.O : ThreatEvaluator.EMPTY;
+                    }
+                    long start = System.nanoTime();
+                    int[] outcomes = archive.outcomes(cells, size, marks);
+                    long counted = System.nanoTime();
+                    long[] games = archive.findGames(cells, size, marks);
+                    System.out.printf("X %d, O %d, draw %d (%.3f ms); %d games listed in %.2f ms%n", outcomes[X_WINS],
+                            outcomes[O_WINS], outcomes[DRAW], (counted - start) / 1e6, games.length,
+                            (System.nanoTime() - counted) / 1e6);
+                    break;
+                }
+                default:
+                    System.out.printf("%d games, %d bytes of game data, %d indexed positions%n",
+                            archive.getGameCount(), archive.getDataSize(), archive.entries);
+            }
+        }
+    }
+}
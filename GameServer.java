@@ -0,0 +1,428 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless multi-session server speaking a line-based protocol:
+//   NEW <size> <marksToWin> <difficulty> [cpu|human] [rounds]  -> OK <sessionId>
+//   CREATE <sessionId> <size> <marksToWin> <difficulty> [...]   -> OK <sessionId>  (id chosen by a ShardRouter)
+//   ATTACH <sessionId>                                          -> OK <sessionId>
+//   MOVE <row> <col>                                            -> OK <board> <status> [<aiRow> <aiCol>]
+//   BOARD                                                       -> OK <board> <status>
+//   SCORE                                                       -> OK <player> <opponent> <draws> <round>/<maxRounds>
+//   NEXT | RESTART                                              -> OK <board> <status>
+//   CACHE                                                       -> OK <solved-position cache stats>
+//   LOAD                                                        -> OK <AI scheduler queue and deadline stats>
+//   PLAYER <name>                                               -> OK <rating> <wins> <losses> <draws>
+//   RANK <name>                                                 -> OK <rank> <rating> <wins> <losses> <draws>
+//   TOP [count] [rating|wins]                                   -> OK <name>:<score> ...
+//   EXPORT <sessionId>                                          -> OK <base64 state>  (session leaves this server)
+//   IMPORT <base64 state>                                       -> OK <sessionId>
+//   QUIT                                                        -> BYE
+// Errors are answered with "ERR <message>". Rounds a named PLAYER finishes against the computer
+// are recorded in a PlayerStatsStore, kept in the file named by -Dttt.stats.file if set.
+public class GameServer implements Closeable {
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final ScheduledExecutorService sweeper;
+    private final Map<Long, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AiScheduler scheduler = new AiScheduler();
+    private final long aiTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("ttt.ai.timeoutMillis", 1000));
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final long idleTimeoutNanos;
+    private final long startedAt = System.nanoTime();
+    private final SessionSnapshotStore snapshots;
+    private final PlayerStatsStore playerStats;
+    private volatile boolean running = true;
+
+    public GameServer(int port, long idleTimeoutSeconds) throws IOException {
+        this(port, idleTimeoutSeconds, null);
+    }
+
+    // With a snapshot file, every session change is written to it and sessions left there by a
+    // previous run are restored on demand when a client ATTACHes.
+    public GameServer(int port, long idleTimeoutSeconds, Path snapshotFile) throws IOException {
+        if (snapshotFile != null) {
+            long start = System.nanoTime();
+            snapshots = new SessionSnapshotStore(snapshotFile, Integer.getInteger("ttt.snapshot.slots", 1 << 17));
+            long maxId = 0;
+            for (long id : snapshots.getDormantIds()) {
+                maxId = Math.max(maxId, id);
+            }
+            nextId.set(maxId + 1);
+            System.out.printf("Recovered %d sessions from %s in %.1f ms%n", snapshots.getDormantCount(), snapshotFile,
+                    (System.nanoTime() - start) / 1e6);
+        } else {
+            snapshots = null;
+        }
+        String statsFile = System.getProperty("ttt.stats.file");
+        playerStats = new PlayerStatsStore(statsFile != null ? Paths.get(statsFile) : null);
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        connections = newConnectionExecutor();
+        idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeoutSeconds / 4);
+        sweeper.scheduleAtFixedRate(this::expireIdleSessions, period, period, TimeUnit.SECONDS);
+    }
+
+    // One virtual thread per connection where the runtime has them (JDK 21+); otherwise a cached
+    // pool of platform threads, which is fine for a few thousand connections.
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "game-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public GameSession getSession(long id) {
+        return lookup(id);
+    }
+
+    private GameSession lookup(long id) {
+        GameSession session = sessions.get(id);
+        if (session == null && snapshots != null) {
+            GameSession restored = snapshots.load(id);
+            if (restored != null) {
+                restored.touch();
+                session = sessions.putIfAbsent(id, restored);
+                if (session == null) {
+                    session = restored;
+                }
+            }
+        }
+        return session;
+    }
+
+    private void persist(GameSession session) {
+        if (snapshots != null) {
+            snapshots.save(session);
+        }
+    }
+
+    private void forget(long id) {
+        if (snapshots != null) {
+            snapshots.remove(id);
+        }
+    }
+
+    public void start() {
+        Thread acceptor = new Thread(this::acceptLoop, "game-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Game server listening on port " + getPort());
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+            GameSession session = null;
+            String player = null;
+            Random rand = new Random();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                String reply;
+                try {
+                    switch (parts[0].toUpperCase()) {
+                        case "NEW":
+                            session = createSession(nextId.getAndIncrement(), parts, 1);
+                            reply = "OK " + session.getId();
+                            break;
+                        case "CREATE":
+                            session = createSession(Long.parseLong(parts[1]), parts, 2);
+                            reply = "OK " + session.getId();
+                            break;
+                        case "EXPORT":
+                            reply = "OK " + exportSession(Long.parseLong(parts[1]));
+                            if (session != null && session.getId() == Long.parseLong(parts[1])) {
+                                session = null;
+                            }
+                            break;
+                        case "IMPORT":
+                            reply = "OK " + importSession(parts[1]).getId();
+                            break;
+                        case "ATTACH":
+                            session = lookup(Long.parseLong(parts[1]));
+                            if (session == null) {
+                                throw new IllegalArgumentException("Unknown session");
+                            }
+                            session.touch();
+                            reply = "OK " + session.getId();
+                            break;
+                        case "CACHE":
+                            reply = "OK " + SolvedPositionCache.shared().stats();
+                            break;
+                        case "LOAD":
+                            reply = "OK " + scheduler.stats();
+                            break;
+                        case "PLAYER": {
+                            PlayerStatsStore.checkName(parts[1]);
+                            player = parts[1];
+                            PlayerStatsStore.Stats stats = playerStats.get(player);
+                            reply = stats == null ? "OK " + PlayerStatsStore.INITIAL_RATING + " 0 0 0"
+                                    : "OK " + stats.rating + " " + stats.wins + " " + stats.losses + " " + stats.draws;
+                            break;
+                        }
+                        case "RANK": {
+                            PlayerStatsStore.Stats stats = playerStats.get(parts[1]);
+                            if (stats == null) {
+                                throw new IllegalArgumentException("Unknown player");
+                            }
+                            reply = "OK " + playerStats.rank(parts[1]) + " " + stats.rating + " " + stats.wins + " "
+                                    + stats.losses + " " + stats.draws;
+                            break;
+                        }
+                        case "TOP": {
+                            int count = parts.length > 1 ? Math.min(100, Integer.parseInt(parts[1])) : 10;
+                            boolean byWins = parts.length > 2 && parts[2].equalsIgnoreCase("wins");
+                            StringBuilder sb = new StringBuilder("OK");
+                            for (Leaderboard.Entry entry : byWins ? playerStats.topByWins(count) : playerStats.topByRating(count)) {
+                                sb.append(' ').append(entry);
+                            }
+                            reply = sb.toString();
+                            break;
+                        }
+                        case "QUIT":
+                            out.write("BYE\n");
+                            out.flush();
+                            return;
+                        default: {
+                            GameSession current = requireSession(session);
+                            int before = current.getStatus();
+                            reply = handle(current, parts, rand);
+                            if (player != null) {
+                                recordResult(player, current, before);
+                            }
+                        }
+                    }
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    reply = "ERR " + e.getMessage();
+                }
+                out.write(reply);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away; its session stays until the idle timeout so it can reattach.
+        }
+    }
+
+    private GameSession createSession(long id, String[] parts, int first) {
+        int size = Integer.parseInt(parts[first]);
+        int marks = Integer.parseInt(parts[first + 1]);
+        int difficulty = Integer.parseInt(parts[first + 2]);
+        boolean vsComputer = parts.length <= first + 3 || !parts[first + 3].equalsIgnoreCase("human");
+        int rounds = parts.length > first + 4 ? Integer.parseInt(parts[first + 4]) : 5;
+        GameSession session = new GameSession(id, size, marks, difficulty, vsComputer, rounds);
+        if (sessions.putIfAbsent(id, session) != null) {
+            throw new IllegalArgumentException("Session " + id + " already exists");
+        }
+        reserveId(id);
+        persist(session);
+        return session;
+    }
+
+    // Removes the session and returns its compact state for another server to IMPORT.
+    String exportSession(long id) {
+        GameSession session = lookup(id) != null ? sessions.remove(id) : null;
+        if (session == null) {
+            throw new IllegalArgumentException("Unknown session");
+        }
+        forget(id);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            session.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    GameSession importSession(String state) {
+        GameSession session;
+        try {
+            session = GameSession.readFrom(new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(state))));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        session.touch();
+        if (sessions.putIfAbsent(session.getId(), session) != null) {
+            throw new IllegalArgumentException("Session " + session.getId() + " already exists");
+        }
+        reserveId(session.getId());
+        persist(session);
+        return session;
+    }
+
+    // Keeps NEW from handing out an id that CREATE or IMPORT has already taken.
+    private void reserveId(long id) {
+        nextId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    private GameSession requireSession(GameSession session) {
+        if (session == null) {
+            throw new IllegalArgumentException("No session; send NEW or ATTACH first");
+        }
+        if (sessions.get(session.getId()) != session) {
+            throw new IllegalArgumentException("Session moved or expired; ATTACH again");
+        }
+        return session;
+    }
+
+    String handle(GameSession session, String[] parts, Random rand) {
+        switch (parts[0].toUpperCase()) {
+            case "MOVE": {
+                int row = Integer.parseInt(parts[1]);
+                int col = Integer.parseInt(parts[2]);
+                if (!session.play(row, col)) {
+                    throw new IllegalArgumentException("Illegal move");
+                }
+                int aiCell = -1;
+                if (session.needsComputerMove()) {
+                    aiCell = awaitComputerMove(session, rand);
+                    if (!session.applyComputerMove(aiCell)) {
+                        aiCell = -1;
+                    }
+                }
+                persist(session);
+                String state = "OK " + session.boardString() + " " + GameSession.statusName(session.getStatus());
+                if (aiCell >= 0) {
+                    state += " " + aiCell / session.getBoardSize() + " " + aiCell % session.getBoardSize();
+                }
+                return state;
+            }
+            case "BOARD":
+                session.touch();
+                return "OK " + session.boardString() + " " + GameSession.statusName(session.getStatus());
+            case "SCORE":
+                session.touch();
+                return "OK " + session.getPlayerScore() + " " + session.getOpponentScore() + " " + session.getDrawCount()
+                        + " " + session.getRound() + "/" + session.getMaxRounds();
+            case "NEXT":
+                if (!session.nextRound()) {
+                    throw new IllegalArgumentException("Round still in progress or match finished");
+                }
+                persist(session);
+                return "OK " + session.boardString() + " " + GameSession.statusName(session.getStatus());
+            case "RESTART":
+                session.restartRound();
+                persist(session);
+                return "OK " + session.boardString() + " " + GameSession.statusName(session.getStatus());
+            default:
+                throw new IllegalArgumentException("Unknown command " + parts[0]);
+        }
+    }
+
+    // The connection's player is X; only rounds against the computer count towards the leaderboard.
+    private void recordResult(String player, GameSession session, int statusBefore) {
+        int status = session.getStatus();
+        if (statusBefore != GameSession.ONGOING || status == GameSession.ONGOING || !session.isVsComputer()) {
+            return;
+        }
+        int result = status == GameSession.X_WINS ? PlayerStatsStore.WIN
+                : status == GameSession.O_WINS ? PlayerStatsStore.LOSS : PlayerStatsStore.DRAW;
+        playerStats.record(player, result, PlayerStatsStore.opponentRating(session.getDifficulty()));
+    }
+
+    // The computer always answers: if the scheduled search fails, is cancelled (scheduler closing)
+    // or the wait is interrupted, Medium's quick rules pick the move instead.
+    private int awaitComputerMove(GameSession session, Random rand) {
+        try {
+            return scheduler.submit(session.getId(), session.toCells(), session.getBoardSize(), session.getMarksToWin(),
+                    ThreatEvaluator.O, session.getDifficulty(), aiTimeoutNanos, rand).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // fall through to the quick move
+        }
+        return EngineAI.mediumMove(session.toCells(), session.getBoardSize(), session.getMarksToWin(), ThreatEvaluator.O, rand);
+    }
+
+    private void expireIdleSessions() {
+        long now = System.nanoTime();
+        int before = sessions.size();
+        sessions.values().removeIf(session -> {
+            if (now - session.getLastActive() <= idleTimeoutNanos) {
+                return false;
+            }
+            forget(session.getId());
+            return true;
+        });
+        int expired = before - sessions.size();
+        if (snapshots != null && now - startedAt > idleTimeoutNanos) {
+            expired += snapshots.expireDormant();
+        }
+        if (expired > 0) {
+            System.out.println("Expired " + expired + " idle sessions, " + sessions.size() + " active");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        connections.shutdownNow();
+        sweeper.shutdownNow();
+        scheduler.close();
+        playerStats.close();
+        if (snapshots != null) {
+            snapshots.close();
+        }
+    }
+
+    // Usage: java GameServer [port] [idleTimeoutSeconds] [snapshotFile]
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        long idle = args.length > 1 ? Long.parseLong(args[1]) : 300;
+        Path snapshotFile = args.length > 2 ? Paths.get(args[2]) : null;
+        GameServer server = new GameServer(port, idle, snapshotFile);
+        // Ctrl+C or a kill would otherwise drop stats still waiting for the write-behind flush.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Error closing server: " + e.getMessage());
+            }
+        }, "server-shutdown"));
+        server.start();
+        Thread.currentThread().join();
+    }
+}
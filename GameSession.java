@@ -0,0 +1,304 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+// Compact per-session state for the headless server: one byte per cell and a packed move log
+// instead of a full TicTacToeLogic with String cells.
+public class GameSession {
+    public static final int ONGOING = 0;
+    public static final int X_WINS = 1;
+    public static final int O_WINS = 2;
+    public static final int DRAW = 3;
+
+    private final long id;
+    private final byte boardSize;
+    private final byte marksToWin;
+    private final byte difficulty;
+    private final boolean vsComputer;
+    private final byte[] cells;
+    private short[] moves;
+    private int moveCount;
+    private byte status;
+    private short round = 1;
+    private short maxRounds;
+    private short playerScore;
+    private short opponentScore;
+    private short drawCount;
+    private volatile long lastActive;
+
+    public GameSession(long id, int boardSize, int marksToWin, int difficulty, boolean vsComputer, int maxRounds) {
+        if (boardSize < 3 || boardSize > 10) {
+            throw new IllegalArgumentException("Board size must be between 3 and 10");
+        }
+        if (marksToWin < 3 || marksToWin > boardSize) {
+            throw new IllegalArgumentException("Marks to win must be between 3 and " + boardSize);
+        }
+        if (difficulty < EngineAI.EASY || difficulty > EngineAI.EXPERT) {
+            throw new IllegalArgumentException("Difficulty must be between 1 and 4");
+        }
+        this.id = id;
+        this.boardSize = (byte) boardSize;
+        this.marksToWin = (byte) marksToWin;
+        this.difficulty = (byte) difficulty;
+        this.vsComputer = vsComputer;
+        this.maxRounds = (short) Math.max(1, maxRounds);
+        this.cells = new byte[boardSize * boardSize];
+        this.moves = new short[Math.min(16, cells.length)];
+        touch();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getMarksToWin() {
+        return marksToWin;
+    }
+
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    public boolean isVsComputer() {
+        return vsComputer;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    public int getPlayerScore() {
+        return playerScore;
+    }
+
+    public int getOpponentScore() {
+        return opponentScore;
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public short getMove(int index) {
+        return moves[index];
+    }
+
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    public void touch() {
+        lastActive = System.nanoTime();
+    }
+
+    // X always moves first; the human plays X against the computer.
+    public int sideToMove() {
+        return (moveCount & 1) == 0 ? ThreatEvaluator.X : ThreatEvaluator.O;
+    }
+
+    public int[] toCells() {
+        int[] result = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            result[i] = cells[i];
+        }
+        return result;
+    }
+
+    // A human move; against the computer it is refused while the computer's O is still owed.
+    public synchronized boolean play(int row, int col) {
+        if (needsComputerMove()) {
+            touch();
+            return false;
+        }
+        return place(row, col);
+    }
+
+    private boolean place(int row, int col) {
+        touch();
+        if (status != ONGOING || row < 0 || row >= boardSize || col < 0 || col >= boardSize) {
+            return false;
+        }
+        int cell = row * boardSize + col;
+        if (cells[cell] != ThreatEvaluator.EMPTY) {
+            return false;
+        }
+        int side = sideToMove();
+        boolean win = completesLine(cell, side);
+        cells[cell] = (byte) side;
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, Math.min(cells.length, moves.length * 2));
+        }
+        moves[moveCount++] = GameTree.pack(cell, side);
+        if (win) {
+            status = (byte) (side == ThreatEvaluator.X ? X_WINS : O_WINS);
+            if (side == ThreatEvaluator.X) playerScore++; else opponentScore++;
+        } else if (moveCount == cells.length) {
+            status = DRAW;
+            drawCount++;
+        }
+        return true;
+    }
+
+    private boolean completesLine(int cell, int side) {
+        int row = cell / boardSize;
+        int col = cell % boardSize;
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] d : directions) {
+            int run = 1;
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int r = row + d[0] * sign;
+                int c = col + d[1] * sign;
+                while (r >= 0 && r < boardSize && c >= 0 && c < boardSize && cells[r * boardSize + c] == side) {
+                    run++;
+                    r += d[0] * sign;
+                    c += d[1] * sign;
+                }
+            }
+            if (run >= marksToWin) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Lets the computer answer if it is its turn; returns the chosen cell or -1.
+    public synchronized int computerMove(Random rand) {
+        return computerMove(rand, difficulty);
+    }
+
+    public synchronized int computerMove(Random rand, int level) {
+        if (!vsComputer || status != ONGOING || sideToMove() != ThreatEvaluator.O) {
+            return -1;
+        }
+        int cell = EngineAI.chooseMove(toCells(), boardSize, marksToWin, ThreatEvaluator.O, level, rand);
+        if (cell >= 0) {
+            place(cell / boardSize, cell % boardSize);
+        }
+        return cell;
+    }
+
+    // Applies a move the computer chose elsewhere (for example on an AiScheduler worker), as long as
+    // the position is still waiting for it.
+    public synchronized boolean applyComputerMove(int cell) {
+        if (!vsComputer || status != ONGOING || sideToMove() != ThreatEvaluator.O || cell < 0) {
+            return false;
+        }
+        return place(cell / boardSize, cell % boardSize);
+    }
+
+    public synchronized boolean needsComputerMove() {
+        return vsComputer && status == ONGOING && sideToMove() == ThreatEvaluator.O;
+    }
+
+    public synchronized boolean nextRound() {
+        touch();
+        if (status == ONGOING || round >= maxRounds) {
+            return false;
+        }
+        round++;
+        clearBoard();
+        return true;
+    }
+
+    public synchronized void restartRound() {
+        touch();
+        clearBoard();
+    }
+
+    private void clearBoard() {
+        Arrays.fill(cells, (byte) 0);
+        moveCount = 0;
+        status = ONGOING;
+    }
+
+    public synchronized String boardString() {
+        StringBuilder sb = new StringBuilder(cells.length);
+        for (byte cell : cells) {
+            sb.append(cell == ThreatEvaluator.X ? 'X' : cell == ThreatEvaluator.O ? 'O' : '.');
+        }
+        return sb.toString();
+    }
+
+    // Compact wire form used to migrate a session between servers: settings, score counters and
+    // the move log; the cells are rebuilt from the moves.
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeLong(id);
+        out.writeByte(boardSize);
+        out.writeByte(marksToWin);
+        out.writeByte(difficulty);
+        out.writeBoolean(vsComputer);
+        out.writeByte(status);
+        out.writeShort(round);
+        out.writeShort(maxRounds);
+        out.writeShort(playerScore);
+        out.writeShort(opponentScore);
+        out.writeShort(drawCount);
+        out.writeShort(moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            out.writeShort(moves[i]);
+        }
+    }
+
+    public static GameSession readFrom(DataInput in) throws IOException {
+        long id = in.readLong();
+        int size = in.readByte();
+        int marks = in.readByte();
+        int difficulty = in.readByte();
+        boolean vsComputer = in.readBoolean();
+        int status = in.readByte();
+        int round = in.readShort();
+        int maxRounds = in.readShort();
+        GameSession session;
+        try {
+            session = new GameSession(id, size, marks, difficulty, vsComputer, maxRounds);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid session state: " + e.getMessage());
+        }
+        session.status = (byte) status;
+        session.round = (short) round;
+        session.playerScore = in.readShort();
+        session.opponentScore = in.readShort();
+        session.drawCount = in.readShort();
+        int count = in.readShort();
+        if (count < 0 || count > session.cells.length) {
+            throw new IOException("Invalid move count " + count);
+        }
+        session.moves = new short[Math.max(count, session.moves.length)];
+        for (int i = 0; i < count; i++) {
+            short move = in.readShort();
+            int cell = GameTree.cellOf(move);
+            if (cell >= session.cells.length || session.cells[cell] != ThreatEvaluator.EMPTY) {
+                throw new IOException("Invalid move log");
+            }
+            session.cells[cell] = (byte) GameTree.sideOf(move);
+            session.moves[i] = move;
+        }
+        session.moveCount = count;
+        return session;
+    }
+
+    public static String statusName(int status) {
+        switch (status) {
+            case X_WINS: return "X_WINS";
+            case O_WINS: return "O_WINS";
+            case DRAW: return "DRAW";
+            default: return "ONGOING";
+        }
+    }
+}
@@ -0,0 +1,103 @@
+// Immutable view of a TicTacToeLogic at one point in time. The logic is only changed by one
+// thread (the Swing event thread in the GUI) and publishes a new snapshot through a volatile
+// field after every change, so renderers, analyzers and spectators on other threads can read a
+// consistent board, turn and score without locking.
+public final class GameSnapshot {
+    private final long version;
+    private final int boardSize;
+    private final int marksToWin;
+    private final byte[] cells;
+    private final boolean playerTurn;
+    private final boolean gameOver;
+    private final int round;
+    private final int maxRounds;
+    private final int playerScore;
+    private final int opponentScore;
+    private final int drawCount;
+    private final GameTree.Node history;
+
+    GameSnapshot(long version, int boardSize, int marksToWin, byte[] cells, boolean playerTurn, boolean gameOver,
+                 int round, int maxRounds, int playerScore, int opponentScore, int drawCount, GameTree.Node history) {
+        this.version = version;
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.cells = cells;
+        this.playerTurn = playerTurn;
+        this.gameOver = gameOver;
+        this.round = round;
+        this.maxRounds = maxRounds;
+        this.playerScore = playerScore;
+        this.opponentScore = opponentScore;
+        this.drawCount = drawCount;
+        this.history = history;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getMarksToWin() {
+        return marksToWin;
+    }
+
+    public int getCell(int cell) {
+        return cells[cell];
+    }
+
+    public String getMark(int row, int col) {
+        return TicTacToeLogic.sideToSymbol(cells[row * boardSize + col]);
+    }
+
+    // Private copy in ThreatEvaluator encoding, for searches.
+    public int[] toCells() {
+        int[] result = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            result[i] = cells[i];
+        }
+        return result;
+    }
+
+    public String boardString() {
+        StringBuilder sb = new StringBuilder(cells.length);
+        for (byte cell : cells) {
+            sb.append(cell == ThreatEvaluator.X ? 'X' : cell == ThreatEvaluator.O ? 'O' : '.');
+        }
+        return sb.toString();
+    }
+
+    public boolean isPlayerTurn() {
+        return playerTurn;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    public int getPlayerScore() {
+        return playerScore;
+    }
+
+    public int getOpponentScore() {
+        return opponentScore;
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public GameTree.Node getHistory() {
+        return history;
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class GameTree implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Moves are packed as (cell << 2 | side) so a whole game fits in a short[].
+    public static short pack(int cell, int side) {
+        return (short) ((cell << 2) | side);
+    }
+
+    public static int cellOf(short move) {
+        return move >>> 2;
+    }
+
+    public static int sideOf(short move) {
+        return move & 3;
+    }
+
+    // Growable packed move buffer shared by every node on one line of play. A node only ever
+    // reads the prefix [0, ply), so extending the buffer never disturbs existing snapshots.
+    private static final class PackedMoves implements Serializable {
+        private static final long serialVersionUID = 1L;
+        volatile short[] data;
+        int used;
+
+        PackedMoves(short[] data, int used) {
+            this.data = data;
+            this.used = used;
+        }
+    }
+
+    public static final class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Node parent;
+        private final int ply;
+        private final PackedMoves moves;
+        private final List<Node> variations = new CopyOnWriteArrayList<>();
+
+        private Node(Node parent, int ply, PackedMoves moves) {
+            this.parent = parent;
+            this.ply = ply;
+            this.moves = moves;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        public int getPly() {
+            return ply;
+        }
+
+        public short getLastMove() {
+            return ply == 0 ? -1 : moves.data[ply - 1];
+        }
+
+        public short getMove(int index) {
+            if (index < 0 || index >= ply) {
+                throw new IndexOutOfBoundsException("Move " + index + " of " + ply);
+            }
+            return moves.data[index];
+        }
+
+        public short[] getMoves() {
+            return Arrays.copyOf(moves.data, ply);
+        }
+
+        public List<Node> getVariations() {
+            return Collections.unmodifiableList(variations);
+        }
+
+        public int[] toCells(int boardSize) {
+            int[] cells = new int[boardSize * boardSize];
+            for (int i = 0; i < ply; i++) {
+                cells[cellOf(moves.data[i])] = sideOf(moves.data[i]);
+            }
+            return cells;
+        }
+
+        // Child reached by playing move, reusing an existing variation when there is one.
+        public Node play(short move) {
+            for (Node child : variations) {
+                if (child.getLastMove() == move) {
+                    return child;
+                }
+            }
+            Node child;
+            synchronized (moves) {
+                if (moves.used == ply) {
+                    short[] data = moves.data;
+                    if (data.length == ply) {
+                        data = Arrays.copyOf(data, Math.max(16, ply * 2));
+                    }
+                    data[ply] = move;
+                    moves.used++;
+                    moves.data = data;
+                    child = new Node(this, ply + 1, moves);
+                } else {
+                    short[] branch = Arrays.copyOf(moves.data, Math.max(16, ply * 2));
+                    branch[ply] = move;
+                    child = new Node(this, ply + 1, new PackedMoves(branch, ply + 1));
+                }
+            }
+            variations.add(child);
+            return child;
+        }
+    }
+
+    private Node root;
+    private Node[] line;   // root .. tip of the line currently being followed
+    private int lineLength;
+    private int current;
+
+    public GameTree() {
+        clear();
+    }
+
+    public void clear() {
+        root = new Node(null, 0, new PackedMoves(new short[16], 0));
+        line = new Node[16];
+        line[0] = root;
+        lineLength = 1;
+        current = 0;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    // Constant-time snapshot: nodes never change after creation, so the reference is enough.
+    public Node snapshot() {
+        return line[current];
+    }
+
+    public int getPly() {
+        return current;
+    }
+
+    public int getLineLength() {
+        return lineLength - 1;
+    }
+
+    public boolean isEmpty() {
+        return current == 0;
+    }
+
+    public boolean canRedo() {
+        return current < lineLength - 1;
+    }
+
+    // Plays a move at the current ply; if it differs from the next move on the line, a new
+    // variation is started and the old continuation stays reachable from its parent.
+    public Node play(int cell, int side) {
+        short move = pack(cell, side);
+        if (canRedo() && line[current + 1].getLastMove() == move) {
+            return line[++current];
+        }
+        Node child = line[current].play(move);
+        if (current + 2 > line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[++current] = child;
+        lineLength = current + 1;
+        return child;
+    }
+
+    public short undo() {
+        if (current == 0) {
+            return -1;
+        }
+        return line[current--].getLastMove();
+    }
+
+    public short redo() {
+        if (!canRedo()) {
+            return -1;
+        }
+        return line[++current].getLastMove();
+    }
+
+    public Node jumpTo(int ply) {
+        if (ply < 0 || ply >= lineLength) {
+            throw new IndexOutOfBoundsException("Ply " + ply + " outside line of " + (lineLength - 1));
+        }
+        current = ply;
+        return line[current];
+    }
+
+    // Makes node's line the one followed by undo/redo and moves the cursor onto it.
+    public void select(Node node) {
+        Node tip = node;
+        while (!tip.variations.isEmpty()) {
+            tip = tip.variations.get(tip.variations.size() - 1);
+        }
+        if (tip.ply + 1 > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, tip.ply + 1));
+        }
+        for (Node n = tip; n != null; n = n.parent) {
+            line[n.ply] = n;
+        }
+        lineLength = tip.ply + 1;
+        current = node.ply;
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.*;
+
+public class HeuristicSearch {
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int THREAT_DEPTH = 6;
+    private static final int MAX_BRANCHING = 12;
+
+    private final ThreatEvaluator evaluator;
+    private final int boardSize;
+    private TranspositionTable table;
+    private long key;
+    private volatile long deadline = Long.MAX_VALUE;
+    private boolean aborted;
+    private boolean pruned;
+    private long nodes;
+    private int lastScore;
+
+    public HeuristicSearch(int boardSize, int marksToWin) {
+        this.boardSize = boardSize;
+        evaluator = new ThreatEvaluator(boardSize, marksToWin);
+    }
+
+    // Shares search results with other searches (for example a ponderer) on the same game.
+    public void setTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    public void setDeadline(long nanoTime) {
+        deadline = nanoTime;
+    }
+
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    public boolean wasAborted() {
+        return aborted;
+    }
+
+    // True if the last search skipped legal moves somewhere (the candidate window, MAX_BRANCHING,
+    // the threat-space shortcut or an answer from a shared table), so a WIN or LOSS it reports is
+    // what the examined moves lead to rather than a proof.
+    public boolean wasPruned() {
+        return pruned;
+    }
+
+    // Best cell for side on the given position (ThreatEvaluator encoding), or -1 if the board is full.
+    public int findBestMove(int[] position, int side, int depth) {
+        evaluator.load(position);
+        key = BoardSymmetry.key(position, boardSize, 0);
+        nodes = 0;
+        aborted = false;
+        pruned = false;
+        int opponent = ThreatEvaluator.opponent(side);
+
+        int cell = evaluator.findWinningCell(side);
+        if (cell >= 0) {
+            lastScore = ThreatEvaluator.WIN_SCORE - 1;
+            return cell;
+        }
+        cell = evaluator.findWinningCell(opponent);
+        if (cell >= 0) {
+            lastScore = 0;
+            return cell;
+        }
+        cell = evaluator.findThreatSpaceWin(side, THREAT_DEPTH);
+        if (cell >= 0) {
+            pruned = true;
+            lastScore = ThreatEvaluator.WIN_SCORE - THREAT_DEPTH * 2;
+            return cell;
+        }
+
+        int best = -1;
+        int bestScore = -INFINITY;
+        for (int d = 1; d <= depth; d++) {
+            int iterationBest = -1;
+            int iterationScore = -INFINITY;
+            int alpha = -INFINITY;
+            for (int move : orderedMoves(side, best)) {
+                play(move, side);
+                int score = -negamax(opponent, d - 1, 1, -INFINITY, -alpha);
+                undo(move, side);
+                if (aborted) {
+                    break;
+                }
+                if (score > iterationScore) {
+                    iterationScore = score;
+                    iterationBest = move;
+                }
+                alpha = Math.max(alpha, score);
+            }
+            if (aborted && best >= 0) {
+                break;
+            }
+            best = iterationBest;
+            bestScore = iterationScore;
+            if (Math.abs(bestScore) >= ThreatEvaluator.WIN_SCORE - depth * 2 || aborted) {
+                break;
+            }
+        }
+        if (best < 0) {
+            int[] moves = evaluator.candidateMoves();
+            best = moves.length > 0 ? moves[0] : -1;
+        }
+        lastScore = bestScore;
+        return best;
+    }
+
+    private int negamax(int side, int depth, int ply, int alpha, int beta) {
+        nodes++;
+        if ((nodes & 1023) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        if (evaluator.winner() != ThreatEvaluator.EMPTY) {
+            return -(ThreatEvaluator.WIN_SCORE - ply);
+        }
+        if (evaluator.isFull()) {
+            return 0;
+        }
+        if (depth == 0 || aborted) {
+            return evaluator.evaluate(side);
+        }
+        int hashMove = -1;
+        if (table != null) {
+            TranspositionTable.Entry entry = table.get(key);
+            if (entry != null) {
+                hashMove = entry.move;
+                if (entry.depth >= depth) {
+                    int score = fromTable(entry.score, ply);
+                    if (entry.bound == TranspositionTable.EXACT
+                            || (entry.bound == TranspositionTable.LOWER && score >= beta)
+                            || (entry.bound == TranspositionTable.UPPER && score <= alpha)) {
+                        pruned = true;
+                        return score;
+                    }
+                }
+            }
+        }
+        int originalAlpha = alpha;
+        int opponent = ThreatEvaluator.opponent(side);
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int move : orderedMoves(side, hashMove)) {
+            play(move, side);
+            int score = -negamax(opponent, depth - 1, ply + 1, -beta, -alpha);
+            undo(move, side);
+            if (score > best) {
+                best = score;
+                bestMove = move;
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+            if (alpha >= beta || aborted) {
+                break;
+            }
+        }
+        if (table != null && !aborted) {
+            int bound = best <= originalAlpha ? TranspositionTable.UPPER : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.put(key, toTable(best, ply), depth, bound, bestMove, evaluator.getStoneCount());
+        }
+        return best;
+    }
+
+    // Win scores count plies from the search root; the table stores them relative to the node.
+    private static int toTable(int score, int ply) {
+        if (score >= ThreatEvaluator.WIN_SCORE - 1000) return score + ply;
+        if (score <= -ThreatEvaluator.WIN_SCORE + 1000) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= ThreatEvaluator.WIN_SCORE - 1000) return score - ply;
+        if (score <= -ThreatEvaluator.WIN_SCORE + 1000) return score + ply;
+        return score;
+    }
+
+    private void play(int cell, int side) {
+        evaluator.makeMove(cell, side);
+        key ^= BoardSymmetry.zobrist(cell, side);
+    }
+
+    private void undo(int cell, int side) {
+        key ^= BoardSymmetry.zobrist(cell, side);
+        evaluator.undoMove(cell);
+    }
+
+    private int[] orderedMoves(int side, int first) {
+        int[] moves = evaluator.candidateMoves();
+        Integer[] boxed = new Integer[moves.length];
+        int[] keys = new int[evaluator.getBoardSize() * evaluator.getBoardSize()];
+        for (int i = 0; i < moves.length; i++) {
+            boxed[i] = moves[i];
+            keys[moves[i]] = moves[i] == first ? Integer.MAX_VALUE : evaluator.moveScore(moves[i], side);
+        }
+        Arrays.sort(boxed, (a, b) -> Integer.compare(keys[b], keys[a]));
+        int count = Math.min(boxed.length, MAX_BRANCHING);
+        int empty = evaluator.getBoardSize() * evaluator.getBoardSize() - evaluator.getStoneCount();
+        if (count < empty) {
+            pruned = true;
+        }
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = boxed[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Concurrent ranking of players by an integer score in [0, maxScore]. Counts per score live in a
+// Fenwick tree of atomic longs and the players with each score in a concurrent hash set, so an
+// update is two hash-set operations plus two lock-free O(log maxScore) adds, a rank is an
+// O(log maxScore) prefix sum, and the top N walks the tree from the best non-empty score down.
+// Nothing is ever locked; readers may see an update half applied (a player briefly listed under
+// both scores or neither), never a torn entry. Callers serialize updates for any one player.
+public class Leaderboard {
+    public static final class Entry {
+        public final String player;
+        public final int score;
+
+        Entry(String player, int score) {
+            this.player = player;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return player + ":" + score;
+        }
+    }
+
+    private final int maxScore;
+    private final AtomicLongArray tree;     // Fenwick tree over score + 1
+    private final AtomicReferenceArray<Set<String>> players;
+    private final int topBit;
+
+    public Leaderboard(int maxScore) {
+        this.maxScore = maxScore;
+        this.tree = new AtomicLongArray(maxScore + 2);
+        this.players = new AtomicReferenceArray<>(maxScore + 1);
+        this.topBit = Integer.highestOneBit(maxScore + 1);
+    }
+
+    // Scores outside the range are clamped, so ranks beyond maxScore tie.
+    private int clamp(int score) {
+        return Math.max(0, Math.min(maxScore, score));
+    }
+
+    private void add(int score, long delta) {
+        for (int i = score + 1; i < tree.length(); i += i & -i) {
+            tree.addAndGet(i, delta);
+        }
+    }
+
+    // Players with a score <= score.
+    private long atOrBelow(int score) {
+        long sum = 0;
+        for (int i = score + 1; i > 0; i -= i & -i) {
+            sum += tree.get(i);
+        }
+        return sum;
+    }
+
+    // Lowest score s with atOrBelow(s) >= count, by descending the tree one bit at a time.
+    private int lowestWithAtLeast(long count) {
+        int index = 0;
+        for (int bit = topBit; bit > 0; bit >>= 1) {
+            int next = index + bit;
+            if (next < tree.length() && tree.get(next) < count) {
+                index = next;
+                count -= tree.get(next);
+            }
+        }
+        return index;       // tree position index + 1 is score index
+    }
+
+    private Set<String> bucket(int score) {
+        Set<String> bucket = players.get(score);
+        if (bucket == null) {
+            players.compareAndSet(score, null, ConcurrentHashMap.newKeySet());
+            bucket = players.get(score);
+        }
+        return bucket;
+    }
+
+    // Moves a player from oldScore (negative for a new player) to newScore.
+    public void update(String player, int oldScore, int newScore) {
+        int score = clamp(newScore);
+        bucket(score).add(player);
+        add(score, 1);
+        if (oldScore >= 0) {
+            int old = clamp(oldScore);
+            if (old != score) {
+                bucket(old).remove(player);
+            }
+            add(old, -1);
+        }
+    }
+
+    // 1 + the number of players with a strictly higher score.
+    public long rank(int score) {
+        return 1 + atOrBelow(maxScore) - atOrBelow(clamp(score));
+    }
+
+    // Best first; players with equal scores are ordered by name.
+    public List<Entry> top(int count) {
+        List<Entry> result = new ArrayList<>(Math.min(count, 64));
+        for (int score = maxScore; score >= 0 && result.size() < count; score--) {
+            long upTo = atOrBelow(score);
+            if (upTo <= 0) {
+                break;
+            }
+            score = Math.min(score, lowestWithAtLeast(upTo));
+            Set<String> bucket = players.get(score);
+            if (bucket == null) {
+                continue;
+            }
+            String[] names = bucket.toArray(new String[0]);
+            Arrays.sort(names);
+            for (int i = 0; i < names.length && result.size() < count; i++) {
+                result.add(new Entry(names[i], score));
+            }
+        }
+        return result;
+    }
+
+    public long size() {
+        return atOrBelow(maxScore);
+    }
+}
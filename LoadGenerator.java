@@ -0,0 +1,290 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives a GameServer with simulated players to find how many concurrent games and moves per
+// second a machine sustains. Clients are added in stages (for example 10, 100, 500), each stage
+// runs for a fixed time, and every client keeps playing complete matches with a log-normal think
+// time between moves and a mix of board sizes and difficulties. Per stage it reports throughput,
+// latency percentiles and errors, and writes all stages to a JSON file for comparing runs.
+public class LoadGenerator {
+    private static final int[][] GAME_MIX = {
+            // weight, size, marksToWin, difficulty
+            {40, 3, 3, 3}, {20, 3, 3, 1}, {15, 4, 3, 2}, {15, 5, 4, 2}, {10, 5, 4, 3}};
+
+    // Log-linear latency histogram in microseconds: 64 linear sub-buckets per power of two, so any
+    // recorded value is reported within about 1.5%.
+    static final class Histogram {
+        private static final int SUB_BITS = 6;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_COUNT);
+        private final LongAdder total = new LongAdder();
+        private volatile long max;
+
+        void record(long micros) {
+            long value = Math.max(0, micros);
+            int index;
+            if (value < SUB_COUNT) {
+                index = (int) value;
+            } else {
+                int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+                index = (exponent + 1) * SUB_COUNT + (int) (value >>> exponent) - SUB_COUNT;
+            }
+            counts.incrementAndGet(index);
+            total.increment();
+            if (value > max) {
+                synchronized (this) {
+                    max = Math.max(max, value);
+                }
+            }
+        }
+
+        private static long valueAt(int index) {
+            if (index < SUB_COUNT) {
+                return index;
+            }
+            int exponent = index / SUB_COUNT - 1;
+            long sub = index % SUB_COUNT + SUB_COUNT;
+            return ((sub + 1) << exponent) - 1;
+        }
+
+        long percentile(double p) {
+            long count = total.sum();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(valueAt(i), max);
+                }
+            }
+            return max;
+        }
+
+        long count() {
+            return total.sum();
+        }
+
+        long max() {
+            return max;
+        }
+    }
+
+    static final class Stage {
+        final int clients;
+        final Histogram latency = new Histogram();
+        final LongAdder moves = new LongAdder();
+        final LongAdder games = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        long startNanos;
+        long endNanos;
+        String summary;     // frozen when the stage ends, while later stages keep running
+
+        Stage(int clients) {
+            this.clients = clients;
+        }
+
+        double seconds() {
+            return (endNanos - startNanos) / 1e9;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"clients\":%d,\"seconds\":%.2f,\"moves\":%d,\"movesPerSecond\":%.1f,\"games\":%d,\"errors\":%d,"
+                            + "\"latencyMicros\":{\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}}",
+                    clients, seconds(), moves.sum(), moves.sum() / seconds(), games.sum(), errors.sum(),
+                    latency.percentile(50), latency.percentile(90), latency.percentile(99), latency.percentile(99.9),
+                    latency.max());
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final double meanThinkMillis;
+    private volatile Stage current;
+    private volatile boolean running = true;
+
+    public LoadGenerator(String host, int port, double meanThinkMillis) {
+        this.host = host;
+        this.port = port;
+        this.meanThinkMillis = meanThinkMillis;
+    }
+
+    public List<Stage> run(int[] stageClients, long stageSeconds) throws InterruptedException {
+        ExecutorService clients = GameServer.newConnectionExecutor();
+        List<Stage> stages = new ArrayList<>();
+        int started = 0;
+        try {
+            for (int target : stageClients) {
+                Stage stage = new Stage(target);
+                stage.startNanos = System.nanoTime();
+                current = stage;
+                for (; started < target; started++) {
+                    long seed = started;
+                    clients.execute(() -> client(new Random(seed)));
+                }
+                Thread.sleep(TimeUnit.SECONDS.toMillis(stageSeconds));
+                stage.endNanos = System.nanoTime();
+                stage.summary = stage.toJson();
+                stages.add(stage);
+                System.out.println("Stage " + stage.summary);
+            }
+        } finally {
+            running = false;
+            clients.shutdownNow();
+            clients.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        return stages;
+    }
+
+    private void client(Random rand) {
+        while (running) {
+            try (Socket socket = new Socket(host, port);
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+                socket.setTcpNoDelay(true);
+                playMatches(rand, in, out);
+            } catch (IOException e) {
+                if (running) {
+                    current.errors.increment();
+                    pause(100);
+                }
+            }
+        }
+    }
+
+    private void playMatches(Random rand, BufferedReader in, Writer out) throws IOException {
+        while (running) {
+            int[] game = pickGame(rand);
+            int size = game[1];
+            String reply = call(in, out, "NEW " + size + " " + game[2] + " " + game[3] + " cpu 3", null);
+            if (!reply.startsWith("OK")) {
+                continue;
+            }
+            boolean matchOver = false;
+            while (running && !matchOver) {
+                String board = ".".repeat(size * size);
+                String status = "ONGOING";
+                while (running && status.equals("ONGOING")) {
+                    pause(thinkTime(rand));
+                    int cell = randomEmpty(board, rand);
+                    Stage stage = current;
+                    reply = call(in, out, "MOVE " + cell / size + " " + cell % size, stage);
+                    String[] parts = reply.split(" ");
+                    if (!parts[0].equals("OK") || parts.length < 3) {
+                        stage.errors.increment();
+                        break;
+                    }
+                    stage.moves.increment();
+                    board = parts[1];
+                    status = parts[2];
+                }
+                current.games.increment();
+                matchOver = !call(in, out, "NEXT", null).startsWith("OK");
+            }
+        }
+    }
+
+    private String call(BufferedReader in, Writer out, String line, Stage stage) throws IOException {
+        long start = System.nanoTime();
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new EOFException("Server closed the connection");
+        }
+        if (stage != null) {
+            stage.latency.record((System.nanoTime() - start) / 1000);
+        }
+        return reply;
+    }
+
+    private static int[] pickGame(Random rand) {
+        int total = 0;
+        for (int[] game : GAME_MIX) {
+            total += game[0];
+        }
+        int pick = rand.nextInt(total);
+        for (int[] game : GAME_MIX) {
+            pick -= game[0];
+            if (pick < 0) {
+                return game;
+            }
+        }
+        return GAME_MIX[0];
+    }
+
+    // Log-normal with the configured mean and a long right tail, like real players.
+    private long thinkTime(Random rand) {
+        if (meanThinkMillis <= 0) {
+            return 0;
+        }
+        double sigma = 0.8;
+        double mu = Math.log(meanThinkMillis) - sigma * sigma / 2;
+        return (long) Math.exp(mu + sigma * rand.nextGaussian());
+    }
+
+    private static int randomEmpty(String board, Random rand) {
+        int empty = 0;
+        for (int i = 0; i < board.length(); i++) {
+            if (board.charAt(i) == '.') {
+                empty++;
+            }
+        }
+        int pick = rand.nextInt(Math.max(1, empty));
+        for (int i = 0; i < board.length(); i++) {
+            if (board.charAt(i) == '.' && pick-- == 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static void pause(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static String toJson(String target, double meanThinkMillis, List<Stage> stages) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"target\":\"").append(target).append("\",\"meanThinkMillis\":").append(meanThinkMillis)
+                .append(",\"cpus\":").append(Runtime.getRuntime().availableProcessors())
+                .append(",\"timestamp\":\"").append(java.time.Instant.now()).append("\",\"stages\":[");
+        for (int i = 0; i < stages.size(); i++) {
+            sb.append(i > 0 ? ",\n  " : "\n  ").append(stages.get(i).summary);
+        }
+        return sb.append("\n]}\n").toString();
+    }
+
+    // Usage: java LoadGenerator <host:port> <clients,clients,...> [stageSeconds] [meanThinkMillis] [results.json]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java LoadGenerator <host:port> <clients,clients,...> [stageSeconds] [meanThinkMillis] [results.json]");
+            return;
+        }
+        int colon = args[0].lastIndexOf(':');
+        String host = args[0].substring(0, colon);
+        int port = Integer.parseInt(args[0].substring(colon + 1));
+        int[] stageClients = Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray();
+        long stageSeconds = args.length > 2 ? Long.parseLong(args[2]) : 30;
+        double think = args.length > 3 ? Double.parseDouble(args[3]) : 500;
+        Path output = Paths.get(args.length > 4 ? args[4] : "load-results.json");
+        List<Stage> stages = new LoadGenerator(host, port, think).run(stageClients, stageSeconds);
+        Files.write(output, toJson(args[0], think, stages).getBytes(StandardCharsets.UTF_8));
+        System.out.println("Results written to " + output);
+    }
+}
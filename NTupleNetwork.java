@@ -0,0 +1,322 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Position evaluator for larger boards built from lookup tables indexed by the contents of small
+// groups of cells (n-tuples): every straight run of lineLength cells and every 3x3 block. Tables
+// are shared by all placements of the same shape, rows with columns and the two diagonals with
+// each other, so one board size needs only 2 * 3^lineLength + 3^9 floats. Cells are read from the
+// point of view of the side that just moved (0 empty, 1 own, 2 opponent) and the value of that
+// afterstate is tanh of the sum of one weight per placement, so scoring a candidate move is one
+// lookup per placement through the cell. Weights are learned by TD(0) self-play in train(), with
+// several threads updating the shared arrays without locks (Hogwild); a lost update only costs a
+// little learning.
+public class NTupleNetwork {
+    private static final int MAGIC = 0x54544E54;     // "TTNT"
+    private static final Map<String, Optional<NTupleNetwork>> LOADED = new ConcurrentHashMap<>();
+    private static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561, 19683};
+
+    private final int boardSize;
+    private final int marksToWin;
+    private final int lineLength;
+    private final float[] weights;
+    private final int[][] placements;   // cells of each placement
+    private final int[] tableBase;      // offset of each placement's table in weights
+    private final int[][] touching;     // per cell: placement << 4 | position within it
+
+    public NTupleNetwork(int boardSize, int marksToWin) {
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.lineLength = Math.min(boardSize, Math.min(marksToWin + 1, 6));
+        int lineTable = POW3[lineLength];
+        weights = new float[2 * lineTable + POW3[9]];
+        List<int[]> cells = new ArrayList<>();
+        List<Integer> bases = new ArrayList<>();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int d = 0; d < directions.length; d++) {
+            for (int r = 0; r < boardSize; r++) {
+                for (int c = 0; c < boardSize; c++) {
+                    int endRow = r + directions[d][0] * (lineLength - 1);
+                    int endCol = c + directions[d][1] * (lineLength - 1);
+                    if (endRow >= boardSize || endCol < 0 || endCol >= boardSize) {
+                        continue;
+                    }
+                    int[] line = new int[lineLength];
+                    for (int i = 0; i < lineLength; i++) {
+                        line[i] = (r + directions[d][0] * i) * boardSize + c + directions[d][1] * i;
+                    }
+                    cells.add(line);
+                    bases.add(d < 2 ? 0 : lineTable);
+                }
+            }
+        }
+        for (int r = 0; r + 3 <= boardSize; r++) {
+            for (int c = 0; c + 3 <= boardSize; c++) {
+                int[] block = new int[9];
+                for (int i = 0; i < 9; i++) {
+                    block[i] = (r + i / 3) * boardSize + c + i % 3;
+                }
+                cells.add(block);
+                bases.add(2 * lineTable);
+            }
+        }
+        placements = cells.toArray(new int[0][]);
+        tableBase = bases.stream().mapToInt(Integer::intValue).toArray();
+        List<List<Integer>> perCell = new ArrayList<>();
+        for (int i = 0; i < boardSize * boardSize; i++) {
+            perCell.add(new ArrayList<>());
+        }
+        for (int p = 0; p < placements.length; p++) {
+            for (int i = 0; i < placements[p].length; i++) {
+                perCell.get(placements[p][i]).add(p << 4 | i);
+            }
+        }
+        touching = new int[perCell.size()][];
+        for (int i = 0; i < touching.length; i++) {
+            touching[i] = perCell.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public static String defaultFileName(int boardSize, int marksToWin) {
+        return "ntuple-" + boardSize + "x" + boardSize + "-k" + marksToWin + ".dat";
+    }
+
+    // Trained network for this configuration from the working directory, loaded once per process.
+    public static NTupleNetwork forBoard(int boardSize, int marksToWin) {
+        String name = defaultFileName(boardSize, marksToWin);
+        return LOADED.computeIfAbsent(name, file -> {
+            if (!new File(file).isFile()) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(load(file));
+            } catch (IOException e) {
+                System.err.println("Could not load n-tuple network " + file + ": " + e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    public int getPlacementCount() {
+        return placements.length;
+    }
+
+    // Index of every placement's table entry with the board read from side's point of view.
+    private int[] indexes(int[] cells, int side) {
+        int[] result = new int[placements.length];
+        for (int p = 0; p < placements.length; p++) {
+            int index = 0;
+            for (int i = 0; i < placements[p].length; i++) {
+                int cell = cells[placements[p][i]];
+                index += POW3[i] * (cell == ThreatEvaluator.EMPTY ? 0 : cell == side ? 1 : 2);
+            }
+            result[p] = tableBase[p] + index;
+        }
+        return result;
+    }
+
+    private double sum(int[] features) {
+        double total = 0;
+        for (int feature : features) {
+            total += weights[feature];
+        }
+        return total;
+    }
+
+    // Value in [-1, 1] for the side that just moved, of the position in cells.
+    public double value(int[] cells, int side) {
+        return Math.tanh(sum(indexes(cells, side)));
+    }
+
+    // Move for side: a win if there is one, else a block, else the empty cell whose afterstate the
+    // network values most. With probability explore a random empty cell is played instead.
+    public int bestMove(int[] cells, int side, Random rand, double explore) {
+        int win = EngineAI.winningCell(cells, boardSize, marksToWin, side);
+        if (win >= 0) {
+            return win;
+        }
+        int block = EngineAI.winningCell(cells, boardSize, marksToWin, ThreatEvaluator.opponent(side));
+        if (block >= 0) {
+            return block;
+        }
+        if (rand != null && rand.nextDouble() < explore) {
+            return EngineAI.randomMove(cells, rand);
+        }
+        // The side to move becomes the side that just moved, so read the board as side.
+        int[] features = indexes(cells, side);
+        double base = sum(features);
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != ThreatEvaluator.EMPTY) {
+                continue;
+            }
+            double value = base;
+            for (int entry : touching[cell]) {
+                int feature = features[entry >>> 4];
+                value += weights[feature + POW3[entry & 15]] - weights[feature];
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    // Moves the value of features towards target; called concurrently without locks.
+    private void learn(int[] features, double target, double rate) {
+        double value = Math.tanh(sum(features));
+        float step = (float) (rate * (target - value) * (1 - value * value));
+        for (int feature : features) {
+            weights[feature] += step;
+        }
+    }
+
+    // One self-play game with TD(0) updates after every move: each afterstate is pulled towards
+    // minus the value of the opponent's reply, and the last two towards the result.
+    private void selfPlay(Random rand, double rate, double explore) {
+        int[] cells = new int[boardSize * boardSize];
+        int side = ThreatEvaluator.X;
+        int[] previous = null;
+        for (int moves = 0; moves < cells.length; moves++) {
+            int cell = bestMove(cells, side, rand, explore);
+            boolean won = EngineAI.completesLine(cells, boardSize, marksToWin, cell, side);
+            cells[cell] = side;
+            int[] features = indexes(cells, side);
+            if (won || moves == cells.length - 1) {
+                double result = won ? 1 : 0;
+                learn(features, result, rate);
+                if (previous != null) {
+                    learn(previous, -result, rate);
+                }
+                return;
+            }
+            if (previous != null) {
+                learn(previous, -Math.tanh(sum(features)), rate);
+            }
+            previous = features;
+            side = ThreatEvaluator.opponent(side);
+        }
+    }
+
+    // Self-play training on threads sharing the weight arrays, reporting progress every tenth.
+    public void train(int games, int threads, double rate, double explore) throws InterruptedException {
+        double scaledRate = rate / placements.length;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        int perThread = games / threads;
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            int worker = t;
+            pool.execute(() -> {
+                Random rand = new Random(seed);
+                for (int g = 0; g < perThread; g++) {
+                    selfPlay(rand, scaledRate, explore);
+                    if (worker == 0 && (g + 1) % Math.max(1, perThread / 10) == 0) {
+                        System.out.printf("%d%% of %d games, %.0f games/s%n", (g + 1) * 100 / perThread, games,
+                                (g + 1.0) * threads / ((System.nanoTime() - start) / 1e9));
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    public void save(String filePath) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(boardSize);
+            out.writeByte(marksToWin);
+            out.writeInt(weights.length);
+            for (float weight : weights) {
+                out.writeFloat(weight);
+            }
+        }
+        System.out.println("N-tuple network saved to: " + filePath + " (" + weights.length + " weights)");
+    }
+
+    public static NTupleNetwork load(String filePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an n-tuple network: " + filePath);
+            }
+            NTupleNetwork network = new NTupleNetwork(in.readByte(), in.readByte());
+            if (in.readInt() != network.weights.length) {
+                throw new IOException("Network layout does not match: " + filePath);
+            }
+            for (int i = 0; i < network.weights.length; i++) {
+                network.weights[i] = in.readFloat();
+            }
+            System.out.println("N-tuple network loaded from: " + filePath);
+            return network;
+        }
+    }
+
+    // Plays the network against another level, alternating who starts; returns {wins, losses, draws}
+    // from the network's side and prints the time per network move.
+    static int[] match(NTupleNetwork network, int opponentLevel, int games, Random rand) {
+        int n = network.boardSize;
+        int k = network.marksToWin;
+        int[] results = new int[3];
+        long netNanos = 0;
+        long netMoves = 0;
+        for (int g = 0; g < games; g++) {
+            int[] cells = new int[n * n];
+            int netSide = g % 2 == 0 ? ThreatEvaluator.X : ThreatEvaluator.O;
+            int side = ThreatEvaluator.X;
+            int outcome = 2;
+            for (int moves = 0; moves < cells.length; moves++) {
+                int cell;
+                if (side == netSide) {
+                    long start = System.nanoTime();
+                    cell = network.bestMove(cells, side, null, 0);
+                    netNanos += System.nanoTime() - start;
+                    netMoves++;
+                } else {
+                    cell = EngineAI.chooseMove(cells, n, k, side, opponentLevel, rand);
+                }
+                boolean won = EngineAI.completesLine(cells, n, k, cell, side);
+                cells[cell] = side;
+                if (won) {
+                    outcome = side == netSide ? 0 : 1;
+                    break;
+                }
+                side = ThreatEvaluator.opponent(side);
+            }
+            results[outcome]++;
+        }
+        System.out.printf("Network vs level %d on %dx%d k%d: %d wins, %d losses, %d draws; %.1f us per network move%n",
+                opponentLevel, n, n, k, results[0], results[1], results[2], netNanos / 1e3 / Math.max(1, netMoves));
+        return results;
+    }
+
+    // Usage: java NTupleNetwork train <size> <marksToWin> <games> [threads] [rate] [explore]
+    //        java NTupleNetwork match <size> <marksToWin> <games> [level]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("Usage: java NTupleNetwork train <size> <marksToWin> <games> [threads] [rate] [explore]");
+            System.out.println("       java NTupleNetwork match <size> <marksToWin> <games> [level]");
+            return;
+        }
+        int size = Integer.parseInt(args[1]);
+        int marks = Integer.parseInt(args[2]);
+        int games = Integer.parseInt(args[3]);
+        String file = defaultFileName(size, marks);
+        if (args[0].equals("train")) {
+            NTupleNetwork network = new File(file).isFile() ? load(file) : new NTupleNetwork(size, marks);
+            int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+            double rate = args.length > 5 ? Double.parseDouble(args[5]) : 0.1;
+            double explore = args.length > 6 ? Double.parseDouble(args[6]) : 0.1;
+            long start = System.nanoTime();
+            network.train(games, threads, rate, explore);
+            System.out.printf("Trained %d games on %d threads in %.1f s%n", games, threads, (System.nanoTime() - start) / 1e9);
+            network.save(file);
+        } else {
+            NTupleNetwork network = load(file);
+            int level = args.length > 4 ? Integer.parseInt(args[4]) : EngineAI.MEDIUM;
+            match(network, level, games, new Random(7));
+        }
+    }
+}
@@ -0,0 +1,457 @@
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Non-blocking two-player transport. A single selector thread owns the socket; the GUI only
+// enqueues frames. Frames are [length:u16][type:u8][seq:i32][payload]:
+//   HELLO  round:i16 moveCount:i16 boardSize:u8 marksToWin:u8 digest:i64
+//   MOVE   seq = ply index, cell:i16
+//   SYNC   round:i16 xWins:i16 oWins:i16 draws:i16 count:i16 moves:i16[count]   (packed as GameTree.pack)
+// On every (re)connect both sides exchange HELLO; if the digests of round, score and move log
+// differ, the side further ahead (the host on a tie) sends SYNC and the other side replays it.
+public class NetTransport implements Closeable {
+    private static final byte HELLO = 1;
+    private static final byte MOVE = 2;
+    private static final byte SYNC = 3;
+    private static final int HEADER = 7;
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    public interface Listener {
+        void remoteMove(int cell);
+
+        // Scores are the rounds finished before round; moves is that round's log so far.
+        void resynced(int round, int xWins, int oWins, int draws, short[] moves);
+
+        void connectionChanged(boolean connected, String message);
+    }
+
+    private final boolean host;
+    private final InetSocketAddress address;
+    private final int boardSize;
+    private final int marksToWin;
+    private final Listener listener;
+    private final Selector selector;
+    private final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(1 << 16);
+    private ServerSocketChannel server;
+    private SocketChannel channel;
+    private ByteBuffer pendingWrite;
+    private long nextConnectAttempt;
+    private volatile boolean running = true;
+
+    // Move log of the current round, shared between the GUI thread and the selector thread.
+    private final Object logLock = new Object();
+    private short[] log = new short[128];
+    private int logCount;
+    private int round = 1;
+    private int xWins;
+    private int oWins;
+    private int draws;
+
+    // Listens on every interface, so a peer on another machine can join.
+    public static NetTransport host(int port, int boardSize, int marksToWin, Listener listener) throws IOException {
+        return new NetTransport(true, new InetSocketAddress(port), boardSize, marksToWin, listener);
+    }
+
+    public static NetTransport join(String hostName, int port, int boardSize, int marksToWin, Listener listener) throws IOException {
+        return new NetTransport(false, new InetSocketAddress(hostName, port), boardSize, marksToWin, listener);
+    }
+
+    private NetTransport(boolean host, InetSocketAddress address, int boardSize, int marksToWin, Listener listener) throws IOException {
+        this.host = host;
+        this.address = address;
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.listener = listener;
+        this.selector = Selector.open();
+        if (host) {
+            server = ServerSocketChannel.open();
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        Thread thread = new Thread(this::run, "net-transport");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isHost() {
+        return host;
+    }
+
+    public int getLocalPort() {
+        return server != null ? server.socket().getLocalPort() : -1;
+    }
+
+    public void sendMove(int cell, int side) {
+        ByteBuffer frame;
+        synchronized (logLock) {
+            appendToLog(GameTree.pack(cell, side));
+            frame = frame(MOVE, logCount - 1, 2);
+        }
+        frame.putShort((short) cell).flip();
+        enqueue(frame);
+    }
+
+    // Both sides start the next round themselves; only the log and the score so far need resetting.
+    public void newRound(int newRound, int xWins, int oWins, int draws) {
+        synchronized (logLock) {
+            round = newRound;
+            this.xWins = xWins;
+            this.oWins = oWins;
+            this.draws = draws;
+            logCount = 0;
+        }
+    }
+
+    private void appendToLog(short move) {
+        if (logCount == log.length) {
+            log = Arrays.copyOf(log, log.length * 2);
+        }
+        log[logCount++] = move;
+    }
+
+    private long digest() {
+        long hash = 0xcbf29ce484222325L ^ round;
+        hash = (hash ^ ((long) xWins << 32 | oWins << 16 | draws)) * 0x100000001b3L;
+        for (int i = 0; i < logCount; i++) {
+            hash = (hash ^ (log[i] & 0xFFFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static ByteBuffer frame(byte type, int seq, int payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + payload);
+        buffer.putShort((short) (HEADER + payload)).put(type).putInt(seq);
+        return buffer;
+    }
+
+    private void enqueue(ByteBuffer frame) {
+        outbox.add(frame);
+        selector.wakeup();
+    }
+
+    private ByteBuffer helloFrame() {
+        synchronized (logLock) {
+            ByteBuffer frame = frame(HELLO, 0, 14);
+            frame.putShort((short) round).putShort((short) logCount).put((byte) boardSize).put((byte) marksToWin).putLong(digest());
+            frame.flip();
+            return frame;
+        }
+    }
+
+    private ByteBuffer syncFrame() {
+        synchronized (logLock) {
+            ByteBuffer frame = frame(SYNC, 0, 10 + logCount * 2);
+            frame.putShort((short) round).putShort((short) xWins).putShort((short) oWins).putShort((short) draws)
+                    .putShort((short) logCount);
+            for (int i = 0; i < logCount; i++) {
+                frame.putShort(log[i]);
+            }
+            frame.flip();
+            return frame;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (!host && channel == null && System.currentTimeMillis() >= nextConnectAttempt) {
+                    connect();
+                }
+                selector.select(250);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isConnectable()) {
+                        finishConnect();
+                    } else {
+                        if (key.isReadable()) {
+                            read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush();
+                        }
+                    }
+                }
+                if (channel != null && channel.isConnected()) {
+                    flush();
+                }
+            } catch (ClosedSelectorException e) {
+                break;      // closed from another thread
+            } catch (IOException e) {
+                disconnect(e.getMessage());
+            }
+        }
+    }
+
+    private void connect() throws IOException {
+        nextConnectAttempt = System.currentTimeMillis() + RECONNECT_DELAY_MS;
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_CONNECT);
+        channel.connect(address);
+    }
+
+    private void finishConnect() throws IOException {
+        if (channel.finishConnect()) {
+            connected();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel accepted = server.accept();
+        if (accepted == null) {
+            return;
+        }
+        if (channel != null) {
+            // A reconnecting peer replaces the stale connection.
+            channel.close();
+        }
+        channel = accepted;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        connected();
+    }
+
+    private void connected() throws IOException {
+        outbox.clear();
+        pendingWrite = null;
+        readBuffer.clear();
+        channel.register(selector, SelectionKey.OP_READ);
+        outbox.add(helloFrame());
+        listener.connectionChanged(true, "Connected to " + channel.getRemoteAddress());
+    }
+
+    private void disconnect(String reason) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already closing
+            }
+            channel = null;
+            pendingWrite = null;
+            outbox.clear();
+            nextConnectAttempt = System.currentTimeMillis() + RECONNECT_DELAY_MS;
+            if (running) {
+                listener.connectionChanged(false, host ? "Waiting for opponent to reconnect..." : "Reconnecting: " + reason);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        while (true) {
+            if (pendingWrite == null) {
+                pendingWrite = outbox.poll();
+                if (pendingWrite == null) {
+                    break;
+                }
+            }
+            channel.write(pendingWrite);
+            if (pendingWrite.hasRemaining()) {
+                break;
+            }
+            pendingWrite = null;
+        }
+        SelectionKey key = channel.keyFor(selector);
+        if (key != null && key.isValid()) {
+            key.interestOps(pendingWrite != null ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    private void read() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            throw new IOException("Connection closed by peer");
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= 2) {
+            int length = readBuffer.getShort(readBuffer.position()) & 0xFFFF;
+            if (length < HEADER) {
+                throw new IOException("Corrupt frame");
+            }
+            if (readBuffer.remaining() < length) {
+                break;
+            }
+            int start = readBuffer.position();
+            readBuffer.getShort();
+            byte type = readBuffer.get();
+            int seq = readBuffer.getInt();
+            try {
+                handle(type, seq, length - HEADER);
+            } catch (RuntimeException e) {
+                // A frame that cannot be applied drops the peer rather than the selector thread.
+                throw new IOException("Bad frame from peer: " + e, e);
+            }
+            // The next frame starts after this one's length, whatever handle consumed.
+            readBuffer.position(start + length);
+        }
+        readBuffer.compact();
+    }
+
+    private void handle(byte type, int seq, int payload) throws IOException {
+        switch (type) {
+            case HELLO: {
+                int remoteRound = readBuffer.getShort();
+                int remoteCount = readBuffer.getShort();
+                int remoteSize = readBuffer.get();
+                int remoteMarks = readBuffer.get();
+                long remoteDigest = readBuffer.getLong();
+                if (remoteSize != boardSize || remoteMarks != marksToWin) {
+                    listener.connectionChanged(true, "Opponent plays " + remoteSize + "x" + remoteSize + " k=" + remoteMarks + "; settings differ");
+                    return;
+                }
+                boolean authoritative;
+                synchronized (logLock) {
+                    if (remoteDigest == digest() && remoteCount == logCount && remoteRound == round) {
+                        return;
+                    }
+                    authoritative = round > remoteRound || (round == remoteRound && (logCount > remoteCount || (logCount == remoteCount && host)));
+                }
+                if (authoritative) {
+                    outbox.add(syncFrame());
+                }
+                break;
+            }
+            case MOVE: {
+                int cell = readBuffer.getShort();
+                if (cell < 0 || cell >= boardSize * boardSize) {
+                    throw new IOException("Corrupt MOVE frame: cell " + cell);
+                }
+                boolean apply;
+                boolean gap;
+                synchronized (logLock) {
+                    apply = seq == logCount;
+                    gap = seq > logCount;
+                    if (apply) {
+                        // The host plays X and moves first, so the peer's side is fixed.
+                        appendToLog(GameTree.pack(cell, host ? ThreatEvaluator.O : ThreatEvaluator.X));
+                    }
+                }
+                if (apply) {
+                    listener.remoteMove(cell);
+                } else if (gap) {
+                    outbox.add(helloFrame());
+                }
+                break;
+            }
+            case SYNC: {
+                int syncRound = readBuffer.getShort();
+                int syncX = readBuffer.getShort();
+                int syncO = readBuffer.getShort();
+                int syncDraws = readBuffer.getShort();
+                int count = readBuffer.getShort();
+                if (syncRound < 1 || syncX < 0 || syncO < 0 || syncDraws < 0) {
+                    throw new IOException("Corrupt SYNC frame: round " + syncRound);
+                }
+                if (count < 0 || count > (payload - 10) / 2) {
+                    throw new IOException("Corrupt SYNC frame: " + count + " moves in " + payload + " bytes");
+                }
+                short[] moves = new short[count];
+                for (int i = 0; i < count; i++) {
+                    moves[i] = readBuffer.getShort();
+                    int side = GameTree.sideOf(moves[i]);
+                    if (GameTree.cellOf(moves[i]) >= boardSize * boardSize || (side != ThreatEvaluator.X && side != ThreatEvaluator.O)) {
+                        throw new IOException("Corrupt SYNC frame: move " + moves[i]);
+                    }
+                }
+                synchronized (logLock) {
+                    round = syncRound;
+                    xWins = syncX;
+                    oWins = syncO;
+                    draws = syncDraws;
+                    log = Arrays.copyOf(moves, Math.max(128, count));
+                    logCount = count;
+                }
+                listener.resynced(syncRound, syncX, syncO, syncDraws, moves);
+                break;
+            }
+            default:
+                // Unknown frame types are skipped by length in read().
+                break;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (channel != null) {
+            channel.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        selector.close();
+    }
+
+    // Loopback check across two JVMs: "java NetTransport host 7000" in one terminal and
+    // "java NetTransport join localhost 7000" in another. Each side plays random legal moves.
+    public static void main(String[] args) throws Exception {
+        boolean isHost = args[0].equals("host");
+        int port = Integer.parseInt(isHost ? args[1] : args[2]);
+        GameSession game = new GameSession(1, 3, 3, 1, false, 1);
+        int mySide = isHost ? ThreatEvaluator.X : ThreatEvaluator.O;
+        Random rand = new Random();
+        Object turn = new Object();
+        NetTransport[] transport = new NetTransport[1];
+        Listener listener = new Listener() {
+            @Override
+            public void remoteMove(int cell) {
+                synchronized (turn) {
+                    game.play(cell / 3, cell % 3);
+                    System.out.println("Remote move " + cell + " -> " + game.boardString());
+                    turn.notifyAll();
+                }
+            }
+
+            @Override
+            public void resynced(int round, int xWins, int oWins, int draws, short[] moves) {
+                synchronized (turn) {
+                    game.restartRound();
+                    for (short move : moves) {
+                        game.play(GameTree.cellOf(move) / 3, GameTree.cellOf(move) % 3);
+                    }
+                    System.out.println("Resynced " + moves.length + " moves -> " + game.boardString());
+                    turn.notifyAll();
+                }
+            }
+
+            @Override
+            public void connectionChanged(boolean connected, String message) {
+                System.out.println(message);
+                synchronized (turn) {
+                    turn.notifyAll();
+                }
+            }
+        };
+        transport[0] = isHost ? host(port, 3, 3, listener) : join(args[1], port, 3, 3, listener);
+        synchronized (turn) {
+            while (game.getStatus() == GameSession.ONGOING) {
+                if (game.sideToMove() == mySide) {
+                    Thread.sleep(200);
+                    int cell = EngineAI.randomMove(game.toCells(), rand);
+                    game.play(cell / 3, cell % 3);
+                    transport[0].sendMove(cell, mySide);
+                    System.out.println("Local move " + cell + " -> " + game.boardString());
+                } else {
+                    turn.wait();
+                }
+            }
+        }
+        System.out.println("Result: " + GameSession.statusName(game.getStatus()));
+        Thread.sleep(500);
+        transport[0].close();
+    }
+}
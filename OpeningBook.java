@@ -0,0 +1,96 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class OpeningBook {
+    private static final int MAGIC = 0x54544F42; // "TTOB"
+    private static final Map<String, Optional<OpeningBook>> LOADED = new ConcurrentHashMap<>();
+
+    private final int boardSize;
+    private final int marksToWin;
+    private final Map<Long, Short> moves = new HashMap<>(); // canonical key -> canonical cell
+
+    public OpeningBook(int boardSize, int marksToWin) {
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+    }
+
+    public static String defaultFileName(int boardSize, int marksToWin) {
+        return "book-" + boardSize + "x" + boardSize + "-k" + marksToWin + ".dat";
+    }
+
+    // Book for this configuration from the working directory, loaded once per process.
+    public static OpeningBook forBoard(int boardSize, int marksToWin) {
+        String name = defaultFileName(boardSize, marksToWin);
+        return LOADED.computeIfAbsent(name, file -> {
+            if (!new File(file).isFile()) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(load(file));
+            } catch (IOException e) {
+                System.err.println("Could not load opening book " + file + ": " + e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    public void record(int[] cells, int cell) {
+        long[] keys = BoardSymmetry.keys(cells, boardSize);
+        int sym = BoardSymmetry.minIndex(keys);
+        moves.put(keys[sym], (short) BoardSymmetry.toCanonical(cell, boardSize, sym));
+    }
+
+    // Book move for the position in the caller's orientation, or -1.
+    public int lookup(int[] cells) {
+        long[] keys = BoardSymmetry.keys(cells, boardSize);
+        int sym = BoardSymmetry.minIndex(keys);
+        Short cell = moves.get(keys[sym]);
+        if (cell == null) {
+            return -1;
+        }
+        int move = BoardSymmetry.fromCanonical(cell, boardSize, sym);
+        return cells[move] == ThreatEvaluator.EMPTY ? move : -1;
+    }
+
+    public int size() {
+        return moves.size();
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getMarksToWin() {
+        return marksToWin;
+    }
+
+    public void save(String filePath) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(boardSize);
+            out.writeByte(marksToWin);
+            out.writeInt(moves.size());
+            for (Map.Entry<Long, Short> entry : moves.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeShort(entry.getValue());
+            }
+        }
+        System.out.println("Opening book saved to: " + filePath + " (" + moves.size() + " positions)");
+    }
+
+    public static OpeningBook load(String filePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an opening book: " + filePath);
+            }
+            OpeningBook book = new OpeningBook(in.readByte(), in.readByte());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                book.moves.put(in.readLong(), in.readShort());
+            }
+            System.out.println("Opening book loaded from: " + filePath + " (" + count + " positions)");
+            return book;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Counts every legal continuation of a position to a fixed depth, like chess "perft": per ply the
+// number of positions reached, how many of them end the game with a win and how many with a full
+// board. Lines stop at a win, so the counts are ground truth for move generation and win detection
+// on any board size, and the nodes per second are a raw speed baseline for the engine's
+// completesLine. The tree is split into fork-join tasks over the first plies; with dedupe each ply
+// is expanded as a set of distinct positions instead, which counts transpositions once.
+public class Perft {
+    // Per-ply totals; index 0 is the root.
+    static final class Counts {
+        final long[] nodes;
+        final long[] wins;
+        final long[] draws;
+
+        Counts(int depth) {
+            nodes = new long[depth + 1];
+            wins = new long[depth + 1];
+            draws = new long[depth + 1];
+        }
+
+        void add(Counts other) {
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] += other.nodes[i];
+                wins[i] += other.wins[i];
+                draws[i] += other.draws[i];
+            }
+        }
+
+        long totalNodes() {
+            long total = 0;
+            for (long n : nodes) {
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    private final int boardSize;
+    private final int marksToWin;
+    private final int splitPlies;
+
+    public Perft(int boardSize, int marksToWin, int splitPlies) {
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.splitPlies = splitPlies;
+    }
+
+    static int sideToMove(int[] cells) {
+        int x = 0;
+        int o = 0;
+        for (int cell : cells) {
+            x += cell == ThreatEvaluator.X ? 1 : 0;
+            o += cell == ThreatEvaluator.O ? 1 : 0;
+        }
+        return x > o ? ThreatEvaluator.O : ThreatEvaluator.X;
+    }
+
+    public Counts run(int[] cells, int depth, ForkJoinPool pool) {
+        return pool.invoke(new Subtree(cells.clone(), sideToMove(cells), 0, depth, countEmpty(cells)));
+    }
+
+    private static int countEmpty(int[] cells) {
+        int empty = 0;
+        for (int cell : cells) {
+            empty += cell == ThreatEvaluator.EMPTY ? 1 : 0;
+        }
+        return empty;
+    }
+
+    private final class Subtree extends RecursiveTask<Counts> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] cells;
+        private final int side;
+        private final int ply;
+        private final int depth;
+        private final int empty;
+
+        Subtree(int[] cells, int side, int ply, int depth, int empty) {
+            this.cells = cells;
+            this.side = side;
+            this.ply = ply;
+            this.depth = depth;
+            this.empty = empty;
+        }
+
+        @Override
+        protected Counts compute() {
+            Counts counts = new Counts(depth);
+            if (ply == 0) {
+                counts.nodes[0] = 1;
+            }
+            if (ply >= splitPlies || depth - ply <= 2) {
+                walk(cells, side, ply, empty, counts);
+                return counts;
+            }
+            List<Subtree> children = new ArrayList<>();
+            for (int cell = 0; cell < cells.length; cell++) {
+                if (cells[cell] != ThreatEvaluator.EMPTY) {
+                    continue;
+                }
+                counts.nodes[ply + 1]++;
+                if (EngineAI.completesLine(cells, boardSize, marksToWin, cell, side)) {
+                    counts.wins[ply + 1]++;
+                } else if (empty == 1) {
+                    counts.draws[ply + 1]++;
+                } else if (ply + 1 < depth) {
+                    int[] child = cells.clone();
+                    child[cell] = side;
+                    children.add(new Subtree(child, ThreatEvaluator.opponent(side), ply + 1, depth, empty - 1));
+                }
+            }
+            invokeAll(children);
+            for (Subtree child : children) {
+                counts.add(child.join());
+            }
+            return counts;
+        }
+
+        private void walk(int[] cells, int side, int ply, int empty, Counts counts) {
+            for (int cell = 0; cell < cells.length; cell++) {
+                if (cells[cell] != ThreatEvaluator.EMPTY) {
+                    continue;
+                }
+                counts.nodes[ply + 1]++;
+                if (EngineAI.completesLine(cells, boardSize, marksToWin, cell, side)) {
+                    counts.wins[ply + 1]++;
+                } else if (empty == 1) {
+                    counts.draws[ply + 1]++;
+                } else if (ply + 1 < depth) {
+                    cells[cell] = side;
+                    walk(cells, ThreatEvaluator.opponent(side), ply + 1, empty - 1, counts);
+                    cells[cell] = ThreatEvaluator.EMPTY;
+                }
+            }
+        }
+    }
+
+    // Ply-by-ply expansion of distinct positions, each stored as its X and O bitboards (boards of up
+    // to 64 cells). nodes[d] counts distinct positions at ply d; wins and draws count the distinct
+    // ones among them that ended the game.
+    public Counts runDistinct(int[] cells, int depth, ForkJoinPool pool) {
+        if (cells.length > 64) {
+            throw new IllegalArgumentException("Distinct counting needs at most 64 cells");
+        }
+        Counts counts = new Counts(depth);
+        counts.nodes[0] = 1;
+        long[] level = {BatchEvaluator.pack(cells, ThreatEvaluator.X), BatchEvaluator.pack(cells, ThreatEvaluator.O)};
+        int side = sideToMove(cells);
+        for (int ply = 1; ply <= depth && level.length > 0; ply++) {
+            int mover = side;
+            long[] current = level;
+            int positions = current.length / 2;
+            int chunks = Math.max(1, Math.min(positions, pool.getParallelism() * 4));
+            List<RecursiveTask<long[][]>> tasks = new ArrayList<>();
+            for (int c = 0; c < chunks; c++) {
+                int from = (int) ((long) positions * c / chunks);
+                int to = (int) ((long) positions * (c + 1) / chunks);
+                tasks.add(new RecursiveTask<long[][]>() {
+                    @Override
+                    protected long[][] compute() {
+                        return expand(current, from, to, mover);
+                    }
+                });
+            }
+            for (RecursiveTask<long[][]> task : tasks) {
+                pool.execute(task);
+            }
+            PositionSet next = new PositionSet(positions * 2 + 16);
+            PositionSet wins = new PositionSet(16);
+            PositionSet draws = new PositionSet(16);
+            for (RecursiveTask<long[][]> task : tasks) {
+                long[][] result = task.join();     // {continuing, wins, draws}
+                next.addAll(result[0]);
+                wins.addAll(result[1]);
+                draws.addAll(result[2]);
+            }
+            counts.nodes[ply] = next.size() + wins.size() + draws.size();
+            counts.wins[ply] = wins.size();
+            counts.draws[ply] = draws.size();
+            level = next.toArray();
+            side = ThreatEvaluator.opponent(side);
+        }
+        return counts;
+    }
+
+    private long[][] expand(long[] level, int from, int to, int side) {
+        int cellCount = boardSize * boardSize;
+        int[] cells = new int[cellCount];
+        long[][] out = {new long[64], new long[16], new long[16]};
+        int[] sizes = new int[3];
+        for (int p = from; p < to; p++) {
+            long x = level[2 * p];
+            long o = level[2 * p + 1];
+            for (int i = 0; i < cellCount; i++) {
+                cells[i] = (x >>> i & 1) != 0 ? ThreatEvaluator.X : (o >>> i & 1) != 0 ? ThreatEvaluator.O : ThreatEvaluator.EMPTY;
+            }
+            int empty = Long.bitCount(~(x | o)) - (64 - cellCount);
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (cells[cell] != ThreatEvaluator.EMPTY) {
+                    continue;
+                }
+                int kind = EngineAI.completesLine(cells, boardSize, marksToWin, cell, side) ? 1 : empty == 1 ? 2 : 0;
+                if (out[kind].length < sizes[kind] + 2) {
+                    out[kind] = Arrays.copyOf(out[kind], out[kind].length * 2);
+                }
+                out[kind][sizes[kind]++] = side == ThreatEvaluator.X ? x | 1L << cell : x;
+                out[kind][sizes[kind]++] = side == ThreatEvaluator.O ? o | 1L << cell : o;
+            }
+        }
+        for (int k = 0; k < 3; k++) {
+            out[k] = Arrays.copyOf(out[k], sizes[k]);
+        }
+        return out;
+    }
+
+    // Open-addressing set of (x, o) bitboard pairs.
+    static final class PositionSet {
+        private long[] table;       // pairs; slot i is empty when both words are -1
+        private int size;
+
+        PositionSet(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            table = new long[capacity * 2];
+            Arrays.fill(table, -1L);
+        }
+
+        void addAll(long[] pairs) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                add(pairs[i], pairs[i + 1]);
+            }
+        }
+
+        void add(long x, long o) {
+            if ((size + 1) * 2 > table.length / 2) {
+                long[] old = table;
+                table = new long[old.length * 2];
+                Arrays.fill(table, -1L);
+                size = 0;
+                for (int i = 0; i < old.length; i += 2) {
+                    if (old[i] != -1L || old[i + 1] != -1L) {
+                        add(old[i], old[i + 1]);
+                    }
+                }
+            }
+            int mask = table.length / 2 - 1;
+            long h = (x * 0x9E3779B97F4A7C15L) ^ (o * 0xC2B2AE3D27D4EB4FL);
+            int slot = (int) (h ^ (h >>> 29)) & mask;
+            while (table[2 * slot] != -1L || table[2 * slot + 1] != -1L) {
+                if (table[2 * slot] == x && table[2 * slot + 1] == o) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[2 * slot] = x;
+            table[2 * slot + 1] = o;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toArray() {
+            long[] pairs = new long[size * 2];
+            int n = 0;
+            for (int i = 0; i < table.length; i += 2) {
+                if (table[i] != -1L || table[i + 1] != -1L) {
+                    pairs[n++] = table[i];
+                    pairs[n++] = table[i + 1];
+                }
+            }
+            return pairs;
+        }
+    }
+
+    // Usage: java Perft <size> <marksToWin> <depth> [--board <cells>] [--dedupe] [--threads <n>]
+    // Cells are given row by row as X, O and '.'.
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java Perft <size> <marksToWin> <depth> [--board <cells>] [--dedupe] [--threads <n>]");
+            return;
+        }
+        int size = Integer.parseInt(args[0]);
+        int marks = Integer.parseInt(args[1]);
+        int depth = Integer.parseInt(args[2]);
+        int[] cells = new int[size * size];
+        boolean dedupe = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 3; i < args.length; i++) {
+            switch (args[i]) {
+                case "--board":
+                    String board = args[++i];
+                    for (int c = 0; c < cells.length; c++) {
+                        char ch = Character.toUpperCase(board.charAt(c));
+                        cells[c] = ch == 'X' ? ThreatEvaluator.X : ch == 'O' ? ThreatEvaluator.O : ThreatEvaluator.EMPTY;
+                    }
+                    break;
+                case "--dedupe":
+                    dedupe = true;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        for (int c = 0; c < cells.length; c++) {
+            if (cells[c] != ThreatEvaluator.EMPTY && EngineAI.completesLine(cells, size, marks, c, cells[c])) {
+                System.out.println("The game is already over in that position");
+                return;
+            }
+        }
+        depth = Math.min(depth, countEmpty(cells));
+        Perft perft = new Perft(size, marks, 2);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        Counts counts = dedupe ? perft.runDistinct(cells, depth, pool) : perft.run(cells, depth, pool);
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        System.out.printf("%-6s %15s %15s %15s%n", "ply", dedupe ? "positions" : "nodes", "wins", "draws");
+        for (int d = 0; d <= depth; d++) {
+            System.out.printf("%-6d %15d %15d %15d%n", d, counts.nodes[d], counts.wins[d], counts.draws[d]);
+        }
+        long total = counts.totalNodes();
+        System.out.printf("%d %s in %.1f ms on %d threads: %.0f nodes/s%n", total, dedupe ? "distinct positions" : "nodes",
+                elapsed / 1e6, threads, total / (elapsed / 1e9));
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+// Per-player results that outlive a TicTacToeLogic or GameSession, with leaderboards by rating and
+// by wins. Results are applied with ConcurrentHashMap.compute, so updates to different players run
+// in parallel and lookups never wait; each player's stats are an immutable Stats replaced on every
+// result. Changed players are written behind by a background thread as records appended to a log:
+//   [length:u16][crc:i32][name length:u8][name][wins][losses][draws][rating]   (counts as varints)
+// The latest record for a name wins on reload, and the log is rewritten with one record per player
+// once superseded records outnumber live ones four to one.
+public class PlayerStatsStore implements Closeable {
+    public static final int WIN = 0;
+    public static final int LOSS = 1;
+    public static final int DRAW = 2;
+    public static final int INITIAL_RATING = 1200;
+    public static final int MAX_RATING = 4000;
+    public static final int MAX_WINS = 1 << 16;     // the wins board ties everyone above this
+
+    private static final int MAGIC = 0x54545053;    // "TTPS"
+    private static final int K_FACTOR = 24;
+    // Rating of the opponent a result is scored against: a second human, then Easy, Medium, Hard, ...
+    private static final int[] OPPONENT_RATING = {1200, 800, 1200, 1600, 2000};
+
+    public static final class Stats {
+        public final String name;
+        public final int wins;
+        public final int losses;
+        public final int draws;
+        public final int rating;
+
+        Stats(String name, int wins, int losses, int draws, int rating) {
+            this.name = name;
+            this.wins = wins;
+            this.losses = losses;
+            this.draws = draws;
+            this.rating = rating;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + rating + " " + wins + " " + losses + " " + draws;
+        }
+    }
+
+    private final Map<String, Stats> players = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Leaderboard byRating = new Leaderboard(MAX_RATING);
+    private final Leaderboard byWins = new Leaderboard(MAX_WINS);
+    private final Path file;
+    private final ScheduledExecutorService flusher;
+    private FileChannel log;
+    private long logRecords;
+
+    // With a null file the store only lives in memory.
+    public PlayerStatsStore(Path file) throws IOException {
+        this.file = file;
+        if (file == null) {
+            flusher = null;
+            return;
+        }
+        log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (log.size() == 0) {
+            log.write(ByteBuffer.allocate(8).putInt(0, MAGIC).putInt(4, 1), 0);
+        } else {
+            load();
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "player-stats-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Long.getLong("ttt.stats.flushMillis", 2000);
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                System.err.println("Could not flush player stats: " + e.getMessage());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void load() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        log.read(header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a player stats file: " + file);
+        }
+        long offset = 8;
+        long end = log.size();
+        ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+        while (offset < end) {
+            chunk.clear();
+            log.read(chunk, offset);
+            chunk.flip();
+            int position = 0;
+            while (position + 6 <= chunk.limit()) {
+                int length = chunk.getShort(position) & 0xffff;
+                if (position + 6 + length > chunk.limit()) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(chunk.duplicate().position(position + 6).limit(position + 6 + length));
+                if ((int) crc.getValue() != chunk.getInt(position + 2)) {
+                    end = offset + position;    // torn write from a crash; everything after it is dropped
+                    break;
+                }
+                Stats stats = decode(chunk.duplicate().position(position + 6).limit(position + 6 + length));
+                Stats old = players.put(stats.name, stats);
+                byRating.update(stats.name, old == null ? -1 : old.rating, stats.rating);
+                byWins.update(stats.name, old == null ? -1 : old.wins, stats.wins);
+                logRecords++;
+                position += 6 + length;
+            }
+            if (position == 0) {
+                end = offset;
+                break;
+            }
+            offset += position;
+        }
+        if (end < log.size()) {
+            log.truncate(end);
+        }
+    }
+
+    public static int opponentRating(int difficulty) {
+        return OPPONENT_RATING[Math.max(0, Math.min(OPPONENT_RATING.length - 1, difficulty))];
+    }
+
+    public static void checkName(String player) {
+        if (player.isEmpty() || player.getBytes(StandardCharsets.UTF_8).length > 255) {
+            throw new IllegalArgumentException("Player names must be 1 to 255 bytes");
+        }
+    }
+
+    // Records one finished round for player (WIN, LOSS or DRAW) against an opponent of that rating.
+    public Stats record(String player, int result, int opponentRating) {
+        checkName(player);
+        Stats updated = players.compute(player, (name, old) -> {
+            Stats base = old != null ? old : new Stats(name, 0, 0, 0, INITIAL_RATING);
+            double expected = 1 / (1 + Math.pow(10, (opponentRating - base.rating) / 400.0));
+            double score = result == WIN ? 1 : result == DRAW ? 0.5 : 0;
+            int rating = (int) Math.round(base.rating + K_FACTOR * (score - expected));
+            Stats next = new Stats(name, base.wins + (result == WIN ? 1 : 0), base.losses + (result == LOSS ? 1 : 0),
+                    base.draws + (result == DRAW ? 1 : 0), Math.max(0, Math.min(MAX_RATING, rating)));
+            byRating.update(name, old == null ? -1 : base.rating, next.rating);
+            byWins.update(name, old == null ? -1 : base.wins, next.wins);
+            return next;
+        });
+        if (file != null) {
+            dirty.add(player);
+        }
+        return updated;
+    }
+
+    public Stats get(String player) {
+        return players.get(player);
+    }
+
+    public int size() {
+        return players.size();
+    }
+
+    // 1-based position on the rating board, or -1 for an unknown player.
+    public long rank(String player) {
+        Stats stats = players.get(player);
+        return stats == null ? -1 : byRating.rank(stats.rating);
+    }
+
+    public List<Leaderboard.Entry> topByRating(int count) {
+        return byRating.top(count);
+    }
+
+    public List<Leaderboard.Entry> topByWins(int count) {
+        return byWins.top(count);
+    }
+
+    // Appends every player changed since the last flush; called by the background thread and on close.
+    public synchronized void flush() throws IOException {
+        if (file == null || dirty.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        Iterator<String> it = dirty.iterator();
+        while (it.hasNext()) {
+            String name = it.next();
+            it.remove();
+            writeRecord(batch, players.get(name));
+            logRecords++;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+        long end = log.size();
+        while (bytes.hasRemaining()) {
+            log.write(bytes, end + bytes.position());
+        }
+        log.force(false);
+        if (logRecords > 4L * players.size() && logRecords > 10_000) {
+            compact();
+        }
+    }
+
+    // Rewrites the log with one record per player beside the old one and renames it over it.
+    private void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            out.write(ByteBuffer.allocate(8).putInt(MAGIC).putInt(1).array());
+            ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+            for (Stats stats : players.values()) {
+                record.reset();
+                writeRecord(record, stats);
+                record.writeTo(out);
+            }
+        }
+        FileChannel compacted = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        compacted.force(true);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.close();
+        log = compacted;
+        logRecords = players.size();
+    }
+
+    private static void writeRecord(ByteArrayOutputStream out, Stats stats) {
+        byte[] name = stats.name.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(name.length + 12);
+        body.write(name.length);
+        body.write(name, 0, name.length);
+        writeVarint(body, stats.wins);
+        writeVarint(body, stats.losses);
+        writeVarint(body, stats.draws);
+        writeVarint(body, stats.rating);
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        out.writeBytes(ByteBuffer.allocate(6).putShort((short) bytes.length).putInt((int) crc.getValue()).array());
+        out.writeBytes(bytes);
+    }
+
+    private static Stats decode(ByteBuffer body) {
+        byte[] name = new byte[body.get() & 0xff];
+        body.get(name);
+        return new Stats(new String(name, StandardCharsets.UTF_8), readVarint(body), readVarint(body),
+                readVarint(body), readVarint(body));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.close();
+    }
+
+    // Usage: java PlayerStatsStore <file> [players] [results] [threads]
+    // Records random results from several threads, then reopens the file and compares.
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args.length > 0 ? args[0] : "players.log");
+        int playerCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int results = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Files.deleteIfExists(file);
+        List<String> expected;
+        try (PlayerStatsStore store = new PlayerStatsStore(file)) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                pool.execute(() -> {
+                    SplittableRandom rand = new SplittableRandom(seed);
+                    for (int i = 0; i < results / threads; i++) {
+                        store.record("player" + rand.nextInt(playerCount), rand.nextInt(3),
+                                opponentRating(1 + rand.nextInt(3)));
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.HOURS);
+            long recorded = System.nanoTime();
+            SplittableRandom rand = new SplittableRandom(99);
+            long ranked = 0;
+            for (int i = 0; i < 100_000; i++) {
+                ranked += store.rank("player" + rand.nextInt(playerCount));
+            }
+            long queried = System.nanoTime();
+            System.out.printf("%d results for %d players in %.1f ms (%.0f/s); 100k rank queries in %.1f ms (checksum %d)%n",
+                    results / threads * threads, store.size(), (recorded - start) / 1e6,
+                    results / threads * threads / ((recorded - start) / 1e9), (queried - recorded) / 1e6, ranked);
+            System.out.println("Top 5 by rating: " + store.topByRating(5));
+            System.out.println("Top 5 by wins:   " + store.topByWins(5));
+            expected = new ArrayList<>();
+            for (Stats stats : store.players.values()) {
+                expected.add(stats.toString());
+            }
+        }
+        long start = System.nanoTime();
+        try (PlayerStatsStore store = new PlayerStatsStore(file)) {
+            List<String> reloaded = new ArrayList<>();
+            for (Stats stats : store.players.values()) {
+                reloaded.add(stats.toString());
+            }
+            Collections.sort(expected);
+            Collections.sort(reloaded);
+            System.out.printf("Reloaded %d players (%d bytes) in %.1f ms, %s%n", store.size(), Files.size(file),
+                    (System.nanoTime() - start) / 1e6, expected.equals(reloaded) ? "identical" : "MISMATCH");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Ponderer {
+    private static final int MAX_REPLIES = 8;
+    private static final int MAX_DEPTH = 8;
+
+    private final int boardSize;
+    private final int marksToWin;
+    private final TranspositionTable table = new TranspositionTable(1 << 20);
+    private final Map<Long, Response> responses = new ConcurrentHashMap<>(); // position after reply -> our move
+    private final AtomicLong generation = new AtomicLong();
+    private final ExecutorService worker;
+    private volatile HeuristicSearch active;
+    private volatile long rootKey;
+
+    // Our answer to one reply and the depth it was searched to.
+    private static final class Response {
+        final int cell;
+        final int depth;
+
+        Response(int cell, int depth) {
+            this.cell = cell;
+            this.depth = depth;
+        }
+    }
+
+    public Ponderer(int boardSize, int marksToWin) {
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ponderer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    // Starts searching our answers to the opponent's most likely replies on the given position.
+    public void ponder(int[] cells, int opponentSide) {
+        long key = BoardSymmetry.key(cells, boardSize, 0);
+        if (key == rootKey) {
+            return;
+        }
+        stop();
+        rootKey = key;
+        long job = generation.get();
+        responses.clear();
+        int[] position = cells.clone();
+        worker.execute(() -> run(job, position, opponentSide));
+    }
+
+    // Our pondered answer if the opponent played one of the replies we searched at least to
+    // minDepth, or -1. Results for every other reply are discarded; the table keeps them.
+    public int takeResponse(int[] cells, int minDepth) {
+        stop();
+        rootKey = 0;
+        Response response = responses.get(BoardSymmetry.key(cells, boardSize, 0));
+        responses.clear();
+        return response == null || response.depth < minDepth || cells[response.cell] != ThreatEvaluator.EMPTY ? -1 : response.cell;
+    }
+
+    public boolean hasResponse(int[] cells, int minDepth) {
+        Response response = responses.get(BoardSymmetry.key(cells, boardSize, 0));
+        return response != null && response.depth >= minDepth;
+    }
+
+    public void stop() {
+        generation.incrementAndGet();
+        HeuristicSearch search = active;
+        if (search != null) {
+            search.setDeadline(0);
+        }
+    }
+
+    public void shutdown() {
+        stop();
+        worker.shutdownNow();
+    }
+
+    private void run(long job, int[] cells, int opponentSide) {
+        if (generation.get() != job) {
+            return;
+        }
+        ThreatEvaluator evaluator = new ThreatEvaluator(boardSize, marksToWin);
+        evaluator.load(cells);
+        // Only positions at or beyond this one can still be reached, so drop the rest of the table.
+        table.retainFrom(evaluator.getStoneCount());
+        if (evaluator.winner() != ThreatEvaluator.EMPTY || evaluator.isFull()) {
+            return;
+        }
+        int ourSide = ThreatEvaluator.opponent(opponentSide);
+        int[] replies = likelyReplies(evaluator, opponentSide);
+        for (int depth = 2; depth <= MAX_DEPTH; depth++) {
+            for (int reply : replies) {
+                if (generation.get() != job) {
+                    return;
+                }
+                HeuristicSearch search = new HeuristicSearch(boardSize, marksToWin);
+                search.setTable(table);
+                active = search;
+                if (generation.get() != job) {
+                    return;
+                }
+                cells[reply] = opponentSide;
+                int move = search.findBestMove(cells, ourSide, depth);
+                long key = BoardSymmetry.key(cells, boardSize, 0);
+                cells[reply] = ThreatEvaluator.EMPTY;
+                if (!search.wasAborted() && move >= 0) {
+                    responses.put(key, new Response(move, depth));
+                }
+            }
+        }
+        active = null;
+    }
+
+    private static int[] likelyReplies(ThreatEvaluator evaluator, int side) {
+        int[] candidates = evaluator.candidateMoves();
+        Integer[] order = new Integer[candidates.length];
+        int[] scores = new int[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            order[i] = i;
+            scores[i] = evaluator.moveScore(candidates[i], side);
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(scores[b], scores[a]));
+        int count = Math.min(MAX_REPLIES, candidates.length);
+        int[] replies = new int[count];
+        for (int i = 0; i < count; i++) {
+            replies[i] = candidates[order[i]];
+        }
+        return replies;
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PositionAnalyzer {
+    public static final int UNKNOWN = 0;
+    public static final int WIN = 1;
+    public static final int DRAW = 2;
+    public static final int LOSS = 3;
+    public static final int HEURISTIC = 4;
+
+    private static final int WIN_SCORE = ThreatEvaluator.WIN_SCORE;
+    private static final int MATE_RANGE = 1000;
+    private static final int MAX_TABLE_ENTRIES = 1 << 20;
+    private static final int MAX_CACHED_POSITIONS = 4096;
+    private static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+    public static class CellValue {
+        public final int outcome;
+        public final int distance;  // plies to the result for WIN/LOSS
+        public final int score;
+        public final int depth;
+
+        CellValue(int outcome, int distance, int score, int depth) {
+            this.outcome = outcome;
+            this.distance = distance;
+            this.score = score;
+            this.depth = depth;
+        }
+
+        public String label() {
+            switch (outcome) {
+                case WIN: return "W" + distance;
+                case LOSS: return "L" + distance;
+                case DRAW: return "D";
+                case HEURISTIC: return String.format("%+.1f", Math.max(-9.9, Math.min(9.9, score / 10000.0)));
+                default: return "";
+            }
+        }
+    }
+
+    public interface Listener {
+        // Called on the analysis thread; values are indexed by cell in the caller's orientation.
+        void analysisUpdated(long positionKey, CellValue[] values, boolean finished);
+    }
+
+    private static final class Entry {
+        final int score;
+        final int depth;
+        final int bound;
+        final boolean solved;
+
+        Entry(int score, int depth, int bound, boolean solved) {
+            this.score = score;
+            this.depth = depth;
+            this.bound = bound;
+            this.solved = solved;
+        }
+    }
+
+    private final int boardSize;
+    private final int marksToWin;
+    private final Listener listener;
+    private final ExecutorService worker;
+    private final AtomicLong generation = new AtomicLong();
+    // Both maps are only touched from the worker thread.
+    private final Map<Long, Entry> table = new LinkedHashMap<Long, Entry>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_TABLE_ENTRIES;
+        }
+    };
+    private final Map<Long, CellValue[]> positions = new LinkedHashMap<Long, CellValue[]>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CellValue[]> eldest) {
+            return size() > MAX_CACHED_POSITIONS;
+        }
+    };
+    private ThreatEvaluator evaluator;
+    private long[] keys;
+    private boolean horizon;
+    private long jobGeneration;
+
+    public PositionAnalyzer(int boardSize, int marksToWin, Listener listener) {
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.listener = listener;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "position-analyzer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static long positionKey(int[] cells, int boardSize, int marksToWin) {
+        return BoardSymmetry.canonicalKey(cells, boardSize) * 31 + marksToWin;
+    }
+
+    // Starts analysing the position for side, abandoning any analysis still in progress.
+    public void analyze(int[] cells, int side) {
+        long job = generation.incrementAndGet();
+        int[] position = cells.clone();
+        worker.execute(() -> run(job, position, side));
+    }
+
+    public void stop() {
+        generation.incrementAndGet();
+    }
+
+    public void shutdown() {
+        stop();
+        worker.shutdownNow();
+    }
+
+    private boolean cancelled() {
+        return generation.get() != jobGeneration;
+    }
+
+    private void run(long job, int[] cells, int side) {
+        jobGeneration = job;
+        if (cancelled()) {
+            return;
+        }
+        evaluator = new ThreatEvaluator(boardSize, marksToWin);
+        evaluator.load(cells);
+        keys = BoardSymmetry.keys(cells, boardSize);
+        int sym = BoardSymmetry.minIndex(keys);
+        long positionKey = keys[sym] * 31 + marksToWin;
+
+        // Cached values are kept in canonical orientation and mapped back for this caller.
+        CellValue[] canonical = positions.computeIfAbsent(positionKey, k -> new CellValue[cells.length]);
+        listener.analysisUpdated(positionKey, orient(canonical, sym), false);
+        if (evaluator.winner() != ThreatEvaluator.EMPTY || evaluator.isFull()) {
+            listener.analysisUpdated(positionKey, orient(canonical, sym), true);
+            return;
+        }
+
+        int empty = cells.length - evaluator.getStoneCount();
+        int startDepth = 1;
+        for (CellValue value : canonical) {
+            if (value != null) {
+                startDepth = Math.max(startDepth, value.depth);
+            }
+        }
+        boolean allSolved = false;
+        for (int depth = startDepth; depth <= empty && !allSolved && !cancelled(); depth++) {
+            allSolved = true;
+            for (int cell = 0; cell < cells.length && !cancelled(); cell++) {
+                if (evaluator.getCell(cell) != ThreatEvaluator.EMPTY) {
+                    continue;
+                }
+                int canonicalCell = BoardSymmetry.toCanonical(cell, boardSize, sym);
+                CellValue previous = canonical[canonicalCell];
+                if (previous != null && (previous.outcome != HEURISTIC || previous.depth >= depth)) {
+                    allSolved &= previous.outcome != HEURISTIC;
+                    continue;
+                }
+                horizon = false;
+                play(cell, side);
+                int score = -negamax(ThreatEvaluator.opponent(side), depth - 1, -WIN_SCORE - 1, WIN_SCORE + 1);
+                undo(cell, side);
+                if (cancelled()) {
+                    break;
+                }
+                score = decay(score);
+                CellValue value = classify(score, depth, !horizon);
+                allSolved &= value.outcome != HEURISTIC;
+                canonical[canonicalCell] = value;
+                listener.analysisUpdated(positionKey, orient(canonical, sym), false);
+            }
+        }
+        if (!cancelled()) {
+            listener.analysisUpdated(positionKey, orient(canonical, sym), true);
+        }
+    }
+
+    private CellValue[] orient(CellValue[] canonical, int sym) {
+        CellValue[] values = new CellValue[canonical.length];
+        for (int cell = 0; cell < values.length; cell++) {
+            if (evaluator.getCell(cell) == ThreatEvaluator.EMPTY) {
+                values[cell] = canonical[BoardSymmetry.toCanonical(cell, boardSize, sym)];
+            }
+        }
+        return values;
+    }
+
+    private static CellValue classify(int score, int depth, boolean solved) {
+        if (score >= WIN_SCORE - MATE_RANGE) {
+            return new CellValue(WIN, WIN_SCORE - score, score, depth);
+        }
+        if (score <= -WIN_SCORE + MATE_RANGE) {
+            return new CellValue(LOSS, WIN_SCORE + score, score, depth);
+        }
+        if (solved) {
+            return new CellValue(DRAW, 0, score, depth);
+        }
+        return new CellValue(HEURISTIC, 0, score, depth);
+    }
+
+    // Mate scores are relative to the node they were found at, so each ply moves them one step
+    // towards zero; this keeps table entries valid wherever the position is reached from.
+    private static int decay(int score) {
+        if (score >= WIN_SCORE - MATE_RANGE) return score - 1;
+        if (score <= -WIN_SCORE + MATE_RANGE) return score + 1;
+        return score;
+    }
+
+    private int negamax(int side, int depth, int alpha, int beta) {
+        if (evaluator.winner() != ThreatEvaluator.EMPTY) {
+            return -WIN_SCORE;
+        }
+        if (evaluator.isFull()) {
+            return 0;
+        }
+        long key = keys[BoardSymmetry.minIndex(keys)];
+        Entry entry = table.get(key);
+        if (entry != null && (entry.solved || entry.depth >= depth)) {
+            if (entry.bound == EXACT
+                    || (entry.bound == LOWER && entry.score >= beta)
+                    || (entry.bound == UPPER && entry.score <= alpha)) {
+                horizon |= !entry.solved;
+                return entry.score;
+            }
+        }
+        if (depth == 0 || cancelled()) {
+            horizon = true;
+            return evaluator.evaluate(side);
+        }
+
+        boolean outerHorizon = horizon;
+        horizon = false;
+        int[] moves = boardSize <= 5 ? emptyCells() : evaluator.candidateMoves();
+        boolean pruned = moves.length < boardSize * boardSize - evaluator.getStoneCount();
+        int originalAlpha = alpha;
+        int best = -WIN_SCORE - 1;
+        for (int move : moves) {
+            play(move, side);
+            int score = decay(-negamax(ThreatEvaluator.opponent(side), depth - 1, -beta, -alpha));
+            undo(move, side);
+            if (score > best) {
+                best = score;
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        boolean solved = !horizon && !pruned;
+        if (!cancelled()) {
+            int bound = best <= originalAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+            table.put(key, new Entry(best, depth, bound, solved));
+        }
+        horizon = outerHorizon || !solved;
+        return best;
+    }
+
+    private int[] emptyCells() {
+        int[] moves = new int[boardSize * boardSize - evaluator.getStoneCount()];
+        int n = 0;
+        for (int cell = 0; cell < boardSize * boardSize; cell++) {
+            if (evaluator.getCell(cell) == ThreatEvaluator.EMPTY) {
+                moves[n++] = cell;
+            }
+        }
+        return moves;
+    }
+
+    private void play(int cell, int side) {
+        evaluator.makeMove(cell, side);
+        BoardSymmetry.update(keys, boardSize, cell, side);
+    }
+
+    private void undo(int cell, int side) {
+        BoardSymmetry.update(keys, boardSize, cell, side);
+        evaluator.undoMove(cell);
+    }
+}
@@ -0,0 +1,396 @@
+import java.io.*;
+import java.util.*;
+
+public class ProofNumberSolver {
+    static final int INF = 100_000_000;
+    private static final int CHECKPOINT_MAGIC = 0x54545043; // "TTPC"
+
+    private final int boardSize;
+    private final int marksToWin;
+    private final ThreatEvaluator board;
+    private final long[] keys = new long[BoardSymmetry.SYMMETRIES];
+    private final int attacker;
+    private int toMove;
+
+    // Transposition table: canonical key -> (phi << 32 | delta), open addressing.
+    private long[] ttKeys = new long[1 << 16];
+    private long[] ttValues = new long[1 << 16];
+    private int ttSize;
+
+    private long nodes;
+    private long elapsedBefore;
+    private long startNanos;
+    private long deadline = Long.MAX_VALUE;
+    private boolean aborted;
+    private String checkpointFile;
+    private long checkpointIntervalNanos = 60_000_000_000L;
+    private long lastCheckpoint;
+
+    public ProofNumberSolver(int boardSize, int marksToWin) {
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.board = new ThreatEvaluator(boardSize, marksToWin);
+        board.load(new int[boardSize * boardSize]);
+        System.arraycopy(BoardSymmetry.keys(new int[boardSize * boardSize], boardSize), 0, keys, 0, keys.length);
+        this.attacker = ThreatEvaluator.X;
+        this.toMove = ThreatEvaluator.X;
+    }
+
+    public void setCheckpoint(String filePath, long intervalSeconds) throws IOException {
+        checkpointFile = filePath;
+        checkpointIntervalNanos = intervalSeconds * 1_000_000_000L;
+        if (new File(filePath).isFile()) {
+            loadCheckpoint(filePath);
+        }
+    }
+
+    public void setTimeLimit(long seconds) {
+        deadline = System.nanoTime() + seconds * 1_000_000_000L;
+    }
+
+    public static class Result {
+        public final String value;
+        public final boolean solved;
+        public final long proofTreeSize;
+        public final long nodes;
+        public final int tableEntries;
+        public final long elapsedMillis;
+
+        Result(String value, boolean solved, long proofTreeSize, long nodes, int tableEntries, long elapsedMillis) {
+            this.value = value;
+            this.solved = solved;
+            this.proofTreeSize = proofTreeSize;
+            this.nodes = nodes;
+            this.tableEntries = tableEntries;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "value=" + value + ", solved=" + solved + ", proofTreeSize=" + proofTreeSize + ", nodes=" + nodes
+                    + ", tableEntries=" + tableEntries + ", elapsedMs=" + elapsedMillis;
+        }
+    }
+
+    // Proves whether the first player (X) can force a win from the empty board. If not, the value
+    // is a draw: with k-in-a-row, strategy stealing rules out a forced win for the second player.
+    public Result solve() throws IOException {
+        startNanos = System.nanoTime();
+        lastCheckpoint = startNanos;
+        aborted = false;
+        mid(INF, INF);
+        long elapsed = (elapsedBefore + System.nanoTime() - startNanos) / 1_000_000;
+        if (aborted) {
+            if (checkpointFile != null) {
+                writeCheckpoint(checkpointFile);
+            }
+            return new Result("UNKNOWN", false, 0, nodes, ttSize, elapsed);
+        }
+        long[] entry = lookup(canonicalKey());
+        boolean firstPlayerWins = entry[0] == 0;
+        long treeSize = exportProofTree(null, new HashSet<>(), firstPlayerWins);
+        if (checkpointFile != null) {
+            writeCheckpoint(checkpointFile);
+        }
+        return new Result(firstPlayerWins ? "WIN" : "DRAW", true, treeSize, nodes, ttSize, elapsed);
+    }
+
+    // Records the chooser's move for every position in the proof (or disproof) tree.
+    public OpeningBook exportBook(boolean firstPlayerWins) {
+        OpeningBook book = new OpeningBook(boardSize, marksToWin);
+        exportProofTree(book, new HashSet<>(), firstPlayerWins);
+        return book;
+    }
+
+    private void mid(int thPhi, int thDelta) {
+        nodes++;
+        if ((nodes & 4095) == 0) {
+            long now = System.nanoTime();
+            if (now > deadline) {
+                aborted = true;
+            } else if (checkpointFile != null && now - lastCheckpoint > checkpointIntervalNanos) {
+                try {
+                    writeCheckpoint(checkpointFile);
+                } catch (IOException e) {
+                    System.err.println("Checkpoint failed: " + e.getMessage());
+                }
+                lastCheckpoint = now;
+            }
+        }
+        if (aborted) {
+            return;
+        }
+        long key = canonicalKey();
+        if (storeTerminal(key)) {
+            return;
+        }
+        int[] moves = generateMoves();
+        long[] childKeys = new long[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            childKeys[i] = childKey(moves[i]);
+        }
+
+        while (!aborted) {
+            long minDelta = INF;
+            long secondDelta = INF;
+            long bestPhi = INF;
+            long sumPhi = 0;
+            int best = -1;
+            for (int i = 0; i < moves.length; i++) {
+                long[] entry = lookup(childKeys[i]);
+                if (entry[1] < minDelta) {
+                    secondDelta = minDelta;
+                    minDelta = entry[1];
+                    bestPhi = entry[0];
+                    best = i;
+                } else if (entry[1] < secondDelta) {
+                    secondDelta = entry[1];
+                }
+                sumPhi = Math.min(INF, sumPhi + entry[0]);
+            }
+            long phi = minDelta;
+            long delta = sumPhi;
+            if (phi >= thPhi || delta >= thDelta) {
+                store(key, phi, delta);
+                return;
+            }
+            long childPhi = Math.min(INF, thDelta + bestPhi - delta);
+            long childDelta = Math.min(thPhi, secondDelta + 1);
+            play(moves[best]);
+            mid((int) childPhi, (int) childDelta);
+            undo(moves[best]);
+        }
+    }
+
+    // Stores (phi, delta) for terminal positions from the side to move's point of view.
+    private boolean storeTerminal(long key) {
+        int opponent = ThreatEvaluator.opponent(toMove);
+        if (board.winner() != ThreatEvaluator.EMPTY) {
+            store(key, INF, 0);
+            return true;
+        }
+        if (board.findWinningCell(toMove) >= 0) {
+            store(key, 0, INF);
+            return true;
+        }
+        if (board.isFull() || (board.getStoneCount() == boardSize * boardSize - 1 && board.findWinningCell(opponent) < 0)) {
+            // A draw counts as a failure for the attacker.
+            if (toMove == attacker) {
+                store(key, INF, 0);
+            } else {
+                store(key, 0, INF);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Legal moves with symmetric duplicates removed; forced to the block when the opponent threatens.
+    private int[] generateMoves() {
+        int forced = board.findWinningCell(ThreatEvaluator.opponent(toMove));
+        if (forced >= 0) {
+            return new int[]{forced};
+        }
+        int cellCount = boardSize * boardSize;
+        int[] moves = new int[cellCount];
+        long[] seen = new long[cellCount];
+        int n = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (board.getCell(cell) != ThreatEvaluator.EMPTY) {
+                continue;
+            }
+            long child = childKey(cell);
+            boolean duplicate = false;
+            for (int i = 0; i < n; i++) {
+                if (seen[i] == child) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                seen[n] = child;
+                moves[n++] = cell;
+            }
+        }
+        return Arrays.copyOf(moves, n);
+    }
+
+    private long exportProofTree(OpeningBook book, Set<Long> visited, boolean firstPlayerWins) {
+        long key = canonicalKey();
+        if (!visited.add(key)) {
+            return 0;
+        }
+        if (board.winner() != ThreatEvaluator.EMPTY || board.isFull() || board.findWinningCell(toMove) >= 0) {
+            return 1;
+        }
+        int chooser = firstPlayerWins ? attacker : ThreatEvaluator.opponent(attacker);
+        long size = 1;
+        for (int move : generateMoves()) {
+            long[] entry = lookup(childKey(move));
+            if (toMove == chooser && !(entry[0] >= INF && entry[1] == 0)) {
+                continue;
+            }
+            if (toMove == chooser && book != null) {
+                book.record(currentCells(), move);
+            }
+            play(move);
+            size += exportProofTree(book, visited, firstPlayerWins);
+            undo(move);
+            if (toMove == chooser) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    private int[] currentCells() {
+        int[] cells = new int[boardSize * boardSize];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = board.getCell(i);
+        }
+        return cells;
+    }
+
+    private void play(int cell) {
+        board.makeMove(cell, toMove);
+        BoardSymmetry.update(keys, boardSize, cell, toMove);
+        toMove = ThreatEvaluator.opponent(toMove);
+    }
+
+    private void undo(int cell) {
+        toMove = ThreatEvaluator.opponent(toMove);
+        BoardSymmetry.update(keys, boardSize, cell, toMove);
+        board.undoMove(cell);
+    }
+
+    private long canonicalKey() {
+        return nonZero(keys[BoardSymmetry.minIndex(keys)]);
+    }
+
+    private long childKey(int cell) {
+        long[] child = keys.clone();
+        BoardSymmetry.update(child, boardSize, cell, toMove);
+        return nonZero(child[BoardSymmetry.minIndex(child)]);
+    }
+
+    private static long nonZero(long key) {
+        return key == 0 ? 1 : key;
+    }
+
+    private long[] lookup(long key) {
+        int mask = ttKeys.length - 1;
+        for (int i = (int) (mix(key) & mask); ; i = (i + 1) & mask) {
+            if (ttKeys[i] == key) {
+                return new long[]{ttValues[i] >>> 32, ttValues[i] & 0xFFFFFFFFL};
+            }
+            if (ttKeys[i] == 0) {
+                return new long[]{1, 1};
+            }
+        }
+    }
+
+    private void store(long key, long phi, long delta) {
+        if (ttSize * 10L >= ttKeys.length * 6L) {
+            resize();
+        }
+        int mask = ttKeys.length - 1;
+        for (int i = (int) (mix(key) & mask); ; i = (i + 1) & mask) {
+            if (ttKeys[i] == 0) {
+                ttKeys[i] = key;
+                ttSize++;
+            }
+            if (ttKeys[i] == key) {
+                ttValues[i] = (phi << 32) | delta;
+                return;
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = ttKeys;
+        long[] oldValues = ttValues;
+        ttKeys = new long[oldKeys.length * 2];
+        ttValues = new long[oldValues.length * 2];
+        ttSize = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                store(oldKeys[i], oldValues[i] >>> 32, oldValues[i] & 0xFFFFFFFFL);
+            }
+        }
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private void writeCheckpoint(String filePath) throws IOException {
+        File target = new File(filePath);
+        File temp = new File(filePath + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeByte(boardSize);
+            out.writeByte(marksToWin);
+            out.writeLong(nodes);
+            out.writeLong(elapsedBefore + System.nanoTime() - startNanos);
+            out.writeInt(ttSize);
+            for (int i = 0; i < ttKeys.length; i++) {
+                if (ttKeys[i] != 0) {
+                    out.writeLong(ttKeys[i]);
+                    out.writeLong(ttValues[i]);
+                }
+            }
+        }
+        if (!temp.renameTo(target)) {
+            target.delete();
+            if (!temp.renameTo(target)) {
+                throw new IOException("Could not replace checkpoint " + filePath);
+            }
+        }
+        System.out.println("Checkpoint written: " + filePath + " (" + ttSize + " entries, " + nodes + " nodes)");
+    }
+
+    private void loadCheckpoint(String filePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readByte() != boardSize || in.readByte() != marksToWin) {
+                throw new IOException("Checkpoint does not match " + boardSize + "x" + boardSize + " k=" + marksToWin);
+            }
+            nodes = in.readLong();
+            elapsedBefore = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                long value = in.readLong();
+                store(key, value >>> 32, value & 0xFFFFFFFFL);
+            }
+            System.out.println("Checkpoint resumed: " + filePath + " (" + count + " entries, " + nodes + " nodes)");
+        }
+    }
+
+    // Usage: java ProofNumberSolver <boardSize> <marksToWin> [checkpointFile] [maxSeconds]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java ProofNumberSolver <boardSize> <marksToWin> [checkpointFile] [maxSeconds]");
+            return;
+        }
+        int size = Integer.parseInt(args[0]);
+        int marks = Integer.parseInt(args[1]);
+        ProofNumberSolver solver = new ProofNumberSolver(size, marks);
+        if (args.length > 2) {
+            solver.setCheckpoint(args[2], 60);
+        }
+        if (args.length > 3) {
+            solver.setTimeLimit(Long.parseLong(args[3]));
+        }
+        Result result = solver.solve();
+        System.out.println(size + "x" + size + " k=" + marks + ": " + result);
+        if (result.solved) {
+            OpeningBook book = solver.exportBook(result.value.equals("WIN"));
+            book.save(OpeningBook.defaultFileName(size, marks));
+        } else {
+            System.out.println("Search stopped before a proof was found; rerun with the same checkpoint to resume.");
+        }
+    }
+}
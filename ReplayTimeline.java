@@ -0,0 +1,78 @@
+import java.util.*;
+
+// Random access to the positions of a recorded game. The moves stay packed as
+// GameTree.pack(cell, side) deltas; every INTERVAL plies a keyframe holds the whole board, built
+// the first time a seek needs it (from the keyframe before it), so opening a game decodes
+// nothing and a seek copies one keyframe and applies fewer than INTERVAL moves whatever the ply.
+// Short steps from a board the caller already holds play or take back moves instead.
+public class ReplayTimeline {
+    public static final int INTERVAL = 16;
+
+    private final int boardSize;
+    private final short[] moves;
+    private final byte[][] keyframes;       // keyframes[i] is the board after i * INTERVAL moves
+    private int built;                      // keyframes [0, built) exist
+
+    public ReplayTimeline(int boardSize, short[] moves) {
+        this.boardSize = boardSize;
+        this.moves = moves;
+        this.keyframes = new byte[moves.length / INTERVAL + 1][];
+        keyframes[0] = new byte[boardSize * boardSize];
+        built = 1;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    // Number of moves; plies run from 0 (empty board) to getLength().
+    public int getLength() {
+        return moves.length;
+    }
+
+    public short getMove(int index) {
+        return moves[index];
+    }
+
+    // Cell of the move that led to ply, or -1 at the start.
+    public int lastCell(int ply) {
+        return ply == 0 ? -1 : GameTree.cellOf(moves[ply - 1]);
+    }
+
+    private byte[] keyframe(int index) {
+        while (built <= index) {
+            byte[] board = keyframes[built - 1].clone();
+            for (int i = (built - 1) * INTERVAL; i < built * INTERVAL; i++) {
+                board[GameTree.cellOf(moves[i])] = (byte) GameTree.sideOf(moves[i]);
+            }
+            keyframes[built++] = board;
+        }
+        return keyframes[index];
+    }
+
+    // Writes the board at ply into cells (ThreatEvaluator encoding).
+    public void boardAt(int ply, int[] cells) {
+        byte[] base = keyframe(ply / INTERVAL);
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = base[i];
+        }
+        for (int i = ply / INTERVAL * INTERVAL; i < ply; i++) {
+            cells[GameTree.cellOf(moves[i])] = GameTree.sideOf(moves[i]);
+        }
+    }
+
+    // Turns cells, the board at fromPly, into the board at toPly, stepping move by move when that
+    // is shorter than rebuilding from a keyframe.
+    public void seek(int[] cells, int fromPly, int toPly) {
+        if (Math.abs(toPly - fromPly) > toPly % INTERVAL) {
+            boardAt(toPly, cells);
+            return;
+        }
+        for (int i = fromPly; i < toPly; i++) {
+            cells[GameTree.cellOf(moves[i])] = GameTree.sideOf(moves[i]);
+        }
+        for (int i = fromPly - 1; i >= toPly; i--) {
+            cells[GameTree.cellOf(moves[i])] = ThreatEvaluator.EMPTY;
+        }
+    }
+}
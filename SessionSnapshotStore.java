@@ -0,0 +1,220 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+// Fixed-slot memory-mapped file holding the compact state of every live GameSession, rewritten in
+// place whenever a session changes. Each slot is [length:int][crc:int][GameSession.writeTo bytes];
+// a slot with length 0 is free, and one whose CRC does not match (a write cut off by a crash) is
+// treated as free on reopen. Reopening only reads the slot headers and session ids; sessions are
+// rebuilt from their slot the first time they are asked for.
+public class SessionSnapshotStore implements Closeable {
+    private static final int MAGIC = 0x54545353;   // "TTSS"
+    private static final int HEADER_SIZE = 16;
+    public static final int SLOT_SIZE = 256;       // enough for a 10x10 session with a full move log
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final Map<Long, Integer> slots = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> dormant = new ConcurrentHashMap<>();
+    private final BitSet used = new BitSet();
+    private final Object[] stripes = new Object[64];
+    private int nextFree;
+    private boolean fullReported;
+
+    public SessionSnapshotStore(Path file, int slotCount) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() < HEADER_SIZE;
+        if (!fresh) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != SLOT_SIZE) {
+                throw new IOException("Not a session snapshot file: " + file);
+            }
+            slotCount = Math.max(slotCount, header.getInt(8));
+        }
+        this.slotCount = slotCount;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, SLOT_SIZE);
+        buffer.putInt(8, slotCount);
+        if (!fresh) {
+            recover();
+        }
+    }
+
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Indexes the occupied slots by session id without deserializing them.
+    private void recover() {
+        for (int slot = 0; slot < slotCount; slot++) {
+            int base = offset(slot);
+            int length = buffer.getInt(base);
+            if (length <= 0 || length > SLOT_SIZE - 8) {
+                continue;
+            }
+            if (checksum(base + 8, length) != buffer.getInt(base + 4)) {
+                buffer.putInt(base, 0);
+                continue;
+            }
+            long id = buffer.getLong(base + 8);
+            dormant.put(id, slot);
+            slots.put(id, slot);
+            used.set(slot);
+        }
+    }
+
+    private int checksum(int from, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(from).limit(from + length));
+        return (int) crc.getValue();
+    }
+
+    public int getSessionCount() {
+        return slots.size();
+    }
+
+    public int getDormantCount() {
+        return dormant.size();
+    }
+
+    public Set<Long> getDormantIds() {
+        return Collections.unmodifiableSet(dormant.keySet());
+    }
+
+    // Writes the session's current state to its slot, assigning one on first save.
+    public void save(GameSession session) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(SLOT_SIZE);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            session.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] state = bytes.toByteArray();
+        Integer slot = slots.get(session.getId());
+        if (slot == null) {
+            slot = allocate(session.getId());
+            if (slot < 0) {
+                return;
+            }
+        }
+        dormant.remove(session.getId());
+        int base = offset(slot);
+        synchronized (stripes[slot & (stripes.length - 1)]) {
+            // remove frees slots under the same stripe, so a slot that is still ours here cannot be
+            // handed to another session before this write is done.
+            if (!slot.equals(slots.get(session.getId()))) {
+                return;
+            }
+            buffer.putInt(base, 0);
+            buffer.put(base + 8, state);
+            buffer.putInt(base + 4, checksum(base + 8, state.length));
+            buffer.putInt(base, state.length);
+        }
+    }
+
+    private synchronized int allocate(long id) {
+        Integer existing = slots.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        int slot = used.nextClearBit(nextFree);
+        if (slot >= slotCount) {
+            slot = used.nextClearBit(0);
+        }
+        if (slot >= slotCount) {
+            if (!fullReported) {
+                fullReported = true;
+                System.err.println("Session snapshot store full (" + slotCount + " slots); new sessions are not persisted");
+            }
+            return -1;
+        }
+        used.set(slot);
+        nextFree = slot + 1;
+        slots.put(id, slot);
+        return slot;
+    }
+
+    // Rebuilds a session that has not been asked for since the store was reopened, or null.
+    public GameSession load(long id) {
+        Integer slot = dormant.remove(id);
+        if (slot == null) {
+            return null;
+        }
+        int base = offset(slot);
+        byte[] state = new byte[buffer.getInt(base)];
+        buffer.get(base + 8, state);
+        try {
+            return GameSession.readFrom(new DataInputStream(new ByteArrayInputStream(state)));
+        } catch (IOException e) {
+            System.err.println("Dropping unreadable snapshot of session " + id + ": " + e.getMessage());
+            remove(id);
+            return null;
+        }
+    }
+
+    public synchronized void remove(long id) {
+        dormant.remove(id);
+        Integer slot = slots.get(id);
+        if (slot != null) {
+            synchronized (stripes[slot & (stripes.length - 1)]) {
+                slots.remove(id);
+                buffer.putInt(offset(slot), 0);
+            }
+            used.clear(slot);
+            nextFree = Math.min(nextFree, slot);
+        }
+    }
+
+    // Frees every restored session nobody has asked for; called once they have been idle too long.
+    public int expireDormant() {
+        int expired = 0;
+        for (Long id : new ArrayList<>(dormant.keySet())) {
+            remove(id);
+            expired++;
+        }
+        return expired;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    // Usage: java SessionSnapshotStore <file> [sessions]
+    // Writes that many sessions, reopens the file and reports how long recovery took.
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "sessions.snap");
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Files.deleteIfExists(file);
+        Random rand = new Random(1);
+        long start = System.nanoTime();
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file, count)) {
+            for (int i = 0; i < count; i++) {
+                GameSession session = new GameSession(i + 1, 3 + rand.nextInt(3), 3, 1 + rand.nextInt(3), true, 5);
+                session.play(0, 0);
+                session.computerMove(rand, EngineAI.EASY);
+                store.save(session);
+            }
+        }
+        System.out.printf("Saved %d sessions in %.1f ms%n", count, (System.nanoTime() - start) / 1e6);
+        start = System.nanoTime();
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file, count)) {
+            long indexed = System.nanoTime();
+            GameSession sample = store.load(count / 2);
+            System.out.printf("Reopened %d sessions in %.1f ms; session %d rehydrated as %s%n", store.getSessionCount(),
+                    (indexed - start) / 1e6, count / 2, sample == null ? "missing" : sample.boardString());
+        }
+    }
+}
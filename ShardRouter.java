@@ -0,0 +1,433 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Front end for several GameServer processes on one machine. Clients speak the GameServer line
+// protocol to the router; each session lives on the shard its id hashes to on a consistent-hash
+// ring, and the router relays the client's session commands there (NEW, ATTACH and SESSION_COMMANDS;
+// the shards' own EXPORT, IMPORT and CREATE are refused). A separate admin listener changes the ring:
+//   SHARDS                  -> OK <host:port> ...
+//   ADDSHARD <host:port>    -> OK <sessions moved>
+//   REMOVESHARD <host:port> -> OK <sessions moved>
+// When the ring changes, every session whose owner changed is moved with EXPORT/IMPORT while its
+// lock is held, so in-flight commands for it wait rather than fail.
+public class ShardRouter implements Closeable {
+    private static final int VIRTUAL_NODES = 64;
+    private static final Set<String> SESSION_COMMANDS = Set.of(
+            "MOVE", "BOARD", "SCORE", "NEXT", "RESTART", "PLAYER", "RANK", "TOP", "CACHE", "LOAD");
+
+    private final ServerSocket serverSocket;
+    private final ServerSocket adminSocket;
+    private final ExecutorService connections = GameServer.newConnectionExecutor();
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+    private final Map<Long, String> owners = new ConcurrentHashMap<>();
+    private final Map<Long, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(System.currentTimeMillis() << 8);
+    private volatile boolean running = true;
+
+    public ShardRouter(int port, int adminPort, Collection<String> shards) throws IOException {
+        for (String shard : shards) {
+            ring = withShard(ring, shard, true);
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        adminSocket = new ServerSocket();
+        adminSocket.setReuseAddress(true);
+        adminSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), adminPort));
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getAdminPort() {
+        return adminSocket.getLocalPort();
+    }
+
+    public void start() {
+        accept(serverSocket, "router-acceptor", this::serve);
+        accept(adminSocket, "router-admin", this::serveAdmin);
+        System.out.println("Shard router listening on port " + getPort() + " (admin " + getAdminPort()
+                + "), shards " + getShards());
+    }
+
+    private void accept(ServerSocket listener, String name, java.util.function.Consumer<Socket> handler) {
+        Thread acceptor = new Thread(() -> {
+            while (running) {
+                try {
+                    Socket socket = listener.accept();
+                    socket.setTcpNoDelay(true);
+                    connections.execute(() -> handler.accept(socket));
+                } catch (IOException e) {
+                    if (running) {
+                        System.err.println("Accept failed: " + e.getMessage());
+                    }
+                }
+            }
+        }, name);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public Set<String> getShards() {
+        return new TreeSet<>(ring.values());
+    }
+
+    public String ownerOf(long sessionId) {
+        return owners.get(sessionId);
+    }
+
+    private static NavigableMap<Long, String> withShard(NavigableMap<Long, String> current, String shard, boolean add) {
+        NavigableMap<Long, String> next = new TreeMap<>(current);
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            long point = hash(shard + "#" + i);
+            if (add) {
+                next.put(point, shard);
+            } else {
+                next.remove(point, shard);
+            }
+        }
+        return next;
+    }
+
+    private static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    static String route(NavigableMap<Long, String> ring, long sessionId) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("No shards");
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(mix(sessionId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public synchronized int addShard(String shard) throws IOException {
+        if (ring.containsValue(shard)) {
+            return 0;
+        }
+        ring = withShard(ring, shard, true);
+        return rebalance();
+    }
+
+    public synchronized int removeShard(String shard) throws IOException {
+        if (!ring.containsValue(shard)) {
+            return 0;
+        }
+        if (ring.size() == VIRTUAL_NODES) {
+            throw new IllegalArgumentException("Cannot remove the last shard");
+        }
+        ring = withShard(ring, shard, false);
+        return rebalance();
+    }
+
+    // Moves every session whose ring owner differs from where it lives now.
+    private int rebalance() throws IOException {
+        NavigableMap<Long, String> current = ring;
+        int moved = 0;
+        for (Map.Entry<Long, String> entry : owners.entrySet()) {
+            long id = entry.getKey();
+            String target = route(current, id);
+            if (target.equals(entry.getValue())) {
+                continue;
+            }
+            ReentrantLock lock = lockFor(id);
+            lock.lock();
+            try {
+                String source = owners.get(id);
+                if (source != null && !source.equals(target) && migrate(id, source, target)) {
+                    moved++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        System.out.println("Rebalanced " + moved + " sessions across " + getShards());
+        return moved;
+    }
+
+    private boolean migrate(long id, String source, String target) throws IOException {
+        String state = adminCommand(source, "EXPORT " + id);
+        if (!state.startsWith("OK ")) {
+            // Gone from the source (expired); nothing left to move.
+            forget(id);
+            return false;
+        }
+        String imported = adminCommand(target, "IMPORT " + state.substring(3));
+        if (!imported.startsWith("OK ")) {
+            adminCommand(source, "IMPORT " + state.substring(3));
+            System.err.println("Migration of session " + id + " to " + target + " failed: " + imported);
+            return false;
+        }
+        owners.put(id, target);
+        return true;
+    }
+
+    private static String adminCommand(String shard, String command) throws IOException {
+        try (Backend backend = Backend.connect(shard)) {
+            return backend.call(command);
+        }
+    }
+
+    private ReentrantLock lockFor(long id) {
+        return locks.computeIfAbsent(id, key -> new ReentrantLock());
+    }
+
+    // Drops a session its shard no longer has (expired or closed), so neither map grows forever.
+    private void forget(long id) {
+        owners.remove(id);
+        locks.remove(id);
+    }
+
+    // Called with the session's lock held: a miss only means the session is gone if the shard that
+    // missed it is still its owner, and not one it has since been migrated away from.
+    private void forgetIfOwnedBy(long id, String shard) {
+        if (shard.equals(owners.get(id))) {
+            forget(id);
+        }
+    }
+
+    private static final class Backend implements Closeable {
+        final String address;
+        final Socket socket;
+        final BufferedReader in;
+        final Writer out;
+
+        private Backend(String address, Socket socket) throws IOException {
+            this.address = address;
+            this.socket = socket;
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+        }
+
+        static Backend connect(String address) throws IOException {
+            int colon = address.lastIndexOf(':');
+            Socket socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+            socket.setTcpNoDelay(true);
+            return new Backend(address, socket);
+        }
+
+        String call(String line) throws IOException {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new EOFException("Shard " + address + " closed the connection");
+            }
+            return reply;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private void serve(Socket socket) {
+        Backend backend = null;
+        long sessionId = -1;
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                String reply;
+                try {
+                    switch (parts[0].toUpperCase()) {
+                        case "NEW": {
+                            long id = nextId.getAndIncrement();
+                            String rest = line.trim().substring(parts[0].length());
+                            ReentrantLock lock = lockFor(id);
+                            lock.lock();
+                            try {
+                                owners.put(id, route(ring, id));
+                                backend = backendFor(backend, id);
+                                reply = backend.call("CREATE " + id + rest);
+                                if (!reply.startsWith("OK")) {
+                                    forget(id);
+                                } else {
+                                    sessionId = id;
+                                }
+                            } finally {
+                                lock.unlock();
+                            }
+                            break;
+                        }
+                        case "ATTACH": {
+                            long id = Long.parseLong(parts[1]);
+                            if (!owners.containsKey(id)) {
+                                throw new IllegalArgumentException("Unknown session");
+                            }
+                            // Held so the ATTACH cannot land on the source shard mid-migration.
+                            ReentrantLock lock = lockFor(id);
+                            lock.lock();
+                            try {
+                                backend = backendFor(backend, id);
+                                reply = relay(backend, id, null);
+                                if (reply.startsWith("OK")) {
+                                    sessionId = id;
+                                }
+                            } finally {
+                                lock.unlock();
+                            }
+                            break;
+                        }
+                        case "QUIT":
+                            out.write("BYE\n");
+                            out.flush();
+                            return;
+                        default:
+                            if (!SESSION_COMMANDS.contains(parts[0].toUpperCase())) {
+                                throw new IllegalArgumentException("Unknown command " + parts[0]);
+                            }
+                            if (sessionId < 0) {
+                                throw new IllegalArgumentException("No session; send NEW or ATTACH first");
+                            }
+                            ReentrantLock lock = lockFor(sessionId);
+                            lock.lock();
+                            try {
+                                backend = backendFor(backend, sessionId);
+                                reply = relay(backend, sessionId, line.trim());
+                            } finally {
+                                lock.unlock();
+                            }
+                    }
+                } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+                    reply = "ERR " + e.getMessage();
+                } catch (IOException e) {
+                    if (backend != null) {
+                        backend.close();
+                        backend = null;
+                    }
+                    reply = "ERR Shard unavailable: " + e.getMessage();
+                }
+                out.write(reply);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away; the session stays on its shard.
+        } finally {
+            if (backend != null) {
+                try {
+                    backend.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // Connection to the shard that owns the session now, reusing the current one if it still does.
+    private Backend backendFor(Backend backend, long sessionId) throws IOException {
+        String owner = owners.get(sessionId);
+        if (owner == null) {
+            throw new IllegalArgumentException("Unknown session");
+        }
+        if (backend != null && backend.address.equals(owner)) {
+            return backend;
+        }
+        if (backend != null) {
+            backend.close();
+        }
+        return Backend.connect(owner);
+    }
+
+    // Sends the command (or just ATTACH when command is null), reattaching first if the shard no
+    // longer knows this connection's session, as happens after a migration.
+    private String relay(Backend backend, long sessionId, String command) throws IOException {
+        if (command == null) {
+            String attached = backend.call("ATTACH " + sessionId);
+            if (attached.startsWith("ERR Unknown session")) {
+                forgetIfOwnedBy(sessionId, backend.address);
+            }
+            return attached;
+        }
+        String reply = backend.call(command);
+        if (reply.startsWith("ERR No session") || reply.startsWith("ERR Session moved")) {
+            String attached = backend.call("ATTACH " + sessionId);
+            if (!attached.startsWith("OK")) {
+                forgetIfOwnedBy(sessionId, backend.address);
+                return attached;
+            }
+            reply = backend.call(command);
+        }
+        return reply;
+    }
+
+    // Admin connections change the ring; they are kept off the client port so players cannot.
+    private void serveAdmin(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                String reply;
+                try {
+                    switch (parts[0].toUpperCase()) {
+                        case "SHARDS":
+                            reply = "OK " + String.join(" ", getShards());
+                            break;
+                        case "ADDSHARD":
+                            reply = "OK " + addShard(parts[1]);
+                            break;
+                        case "REMOVESHARD":
+                            reply = "OK " + removeShard(parts[1]);
+                            break;
+                        case "QUIT":
+                            out.write("BYE\n");
+                            out.flush();
+                            return;
+                        default:
+                            throw new IllegalArgumentException("Unknown command " + parts[0]);
+                    }
+                } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+                    reply = "ERR " + e.getMessage();
+                } catch (IOException e) {
+                    reply = "ERR Shard unavailable: " + e.getMessage();
+                }
+                out.write(reply);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Admin client went away.
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        adminSocket.close();
+        connections.shutdownNow();
+    }
+
+    // Usage: java ShardRouter <port> <host:port>[,<host:port>...] [adminPort]
+    // Start the shards first with java GameServer <port>. The admin port defaults to port + 1.
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7700;
+        List<String> shards = args.length > 1 ? Arrays.asList(args[1].split(",")) : List.of("127.0.0.1:7777");
+        int adminPort = args.length > 2 ? Integer.parseInt(args[2]) : port + 1;
+        ShardRouter router = new ShardRouter(port, adminPort, shards);
+        router.start();
+        Thread.currentThread().join();
+    }
+}
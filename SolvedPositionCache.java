@@ -0,0 +1,236 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide cache of solved positions (symmetry-canonical key -> best move and value) shared by
+// every session and AI strategy. Lookups are a lock-free map read plus a sketch increment; inserts
+// go through a small admission window and a CLOCK-managed main region, and a window candidate only
+// displaces a main entry if the frequency sketch has seen it more often (W-TinyLFU).
+public class SolvedPositionCache {
+    private static final int BYTES_PER_ENTRY = 96;   // map node, boxed key, entry and queue node
+    private static final SolvedPositionCache SHARED =
+            new SolvedPositionCache(Integer.getInteger("ttt.cache.bytes", 16 << 20) / BYTES_PER_ENTRY);
+
+    public static final class Solved {
+        public final int cell;       // in the caller's orientation
+        public final int score;
+        public final String value;
+
+        Solved(int cell, int score, String value) {
+            this.cell = cell;
+            this.score = score;
+            this.value = value;
+        }
+    }
+
+    private static final class Entry {
+        final short cell;           // in canonical orientation
+        final int score;
+        final String value;
+        volatile boolean referenced;
+
+        Entry(int cell, int score, String value) {
+            this.cell = (short) cell;
+            this.score = score;
+            this.value = value;
+        }
+    }
+
+    private final int capacity;
+    private final int windowCapacity;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> window = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> main = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger windowSize = new AtomicInteger();
+    private final AtomicInteger mainSize = new AtomicInteger();
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public SolvedPositionCache(int capacity) {
+        this.capacity = Math.max(16, capacity);
+        this.windowCapacity = Math.max(1, this.capacity / 100);
+        this.sketch = new FrequencySketch(this.capacity);
+    }
+
+    public static SolvedPositionCache shared() {
+        return SHARED;
+    }
+
+    private static long key(long canonical, int marksToWin, int side) {
+        return (canonical * 31 + marksToWin) * 3 + side;
+    }
+
+    public Solved get(int[] cells, int boardSize, int marksToWin, int side) {
+        long[] keys = BoardSymmetry.keys(cells, boardSize);
+        int sym = BoardSymmetry.minIndex(keys);
+        long key = key(keys[sym], marksToWin, side);
+        sketch.increment(key);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        entry.referenced = true;
+        int cell = entry.cell < 0 ? -1 : BoardSymmetry.fromCanonical(entry.cell, boardSize, sym);
+        return new Solved(cell, entry.score, entry.value);
+    }
+
+    public void put(int[] cells, int boardSize, int marksToWin, int side, int cell, int score, String value) {
+        long[] keys = BoardSymmetry.keys(cells, boardSize);
+        int sym = BoardSymmetry.minIndex(keys);
+        long key = key(keys[sym], marksToWin, side);
+        int canonical = cell < 0 ? -1 : BoardSymmetry.toCanonical(cell, boardSize, sym);
+        if (entries.putIfAbsent(key, new Entry(canonical, score, value)) != null) {
+            return;
+        }
+        synchronized (this) {
+            window.add(key);
+            if (windowSize.incrementAndGet() > windowCapacity) {
+                Long candidate = window.poll();
+                windowSize.decrementAndGet();
+                admit(candidate);
+            }
+        }
+    }
+
+    // Moves a candidate leaving the window into the main region, evicting whichever of it and the
+    // main region's CLOCK victim the sketch has seen less often.
+    private void admit(Long candidate) {
+        if (mainSize.get() + windowCapacity < capacity) {
+            main.add(candidate);
+            mainSize.incrementAndGet();
+            return;
+        }
+        Long victim = nextVictim();
+        if (victim == null || sketch.frequency(candidate) > sketch.frequency(victim)) {
+            if (victim != null) {
+                main.poll();
+                entries.remove(victim);
+                mainSize.decrementAndGet();
+            }
+            main.add(candidate);
+            mainSize.incrementAndGet();
+            admitted.increment();
+        } else {
+            entries.remove(candidate);
+            rejected.increment();
+        }
+    }
+
+    // Head of the main queue after giving recently read entries a second chance.
+    private Long nextVictim() {
+        for (int scanned = 0; scanned < mainSize.get(); scanned++) {
+            Long head = main.peek();
+            if (head == null) {
+                return null;
+            }
+            Entry entry = entries.get(head);
+            if (entry == null || !entry.referenced) {
+                return head;
+            }
+            entry.referenced = false;
+            main.add(main.poll());
+        }
+        return main.peek();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public String stats() {
+        return String.format("entries=%d/%d hits=%d misses=%d hitRate=%.1f%% admitted=%d rejected=%d",
+                size(), capacity, getHits(), getMisses(), getHitRate() * 100, admitted.sum(), rejected.sum());
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        window.clear();
+        main.clear();
+        windowSize.set(0);
+        mainSize.set(0);
+    }
+
+    // Count-min sketch with four 4-bit counters per key packed sixteen to a long; all counters are
+    // halved once the number of increments reaches ten times the capacity, so old popularity fades.
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+        private final AtomicLongArray table;
+        private final int mask;
+        private final int sampleSize;
+        private final AtomicInteger additions = new AtomicInteger();
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(16, capacity / 4) - 1) << 1;
+            table = new AtomicLongArray(size);
+            mask = size - 1;
+            sampleSize = 10 * capacity;
+        }
+
+        private int index(long key, int i) {
+            long h = (key ^ SEEDS[i]) * SEEDS[(i + 1) & 3];
+            return (int) (h >>> 40) & mask;
+        }
+
+        private int shift(long key, int i) {
+            return (int) ((key >>> (i * 4)) & 15) << 2;
+        }
+
+        int frequency(long key) {
+            int min = 15;
+            for (int i = 0; i < 4; i++) {
+                min = Math.min(min, (int) (table.get(index(key, i)) >>> shift(key, i)) & 15);
+            }
+            return min;
+        }
+
+        void increment(long key) {
+            for (int i = 0; i < 4; i++) {
+                int slot = index(key, i);
+                int shift = shift(key, i);
+                long word = table.get(slot);
+                if (((word >>> shift) & 15) < 15) {
+                    table.compareAndSet(slot, word, word + (1L << shift));
+                }
+            }
+            if (additions.incrementAndGet() >= sampleSize) {
+                reset();
+            }
+        }
+
+        private synchronized void reset() {
+            if (additions.get() < sampleSize) {
+                return;
+            }
+            for (int i = 0; i < table.length(); i++) {
+                table.set(i, (table.get(i) >>> 1) & 0x7777777777777777L);
+            }
+            additions.set(0);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+// Board that stores only occupied cells, in an open-addressing table from packed (row, col) to
+// side, and tracks the bounding box of play. Coordinates are unbounded ints, so it also serves an
+// infinite board; memory and the cost of win checks and candidate generation grow with the number
+// of stones rather than the area.
+public class SparseBoard implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public interface StoneVisitor {
+        void visit(int row, int col, int side);
+    }
+
+    private long[] keys;
+    private byte[] sides;        // ThreatEvaluator.EMPTY marks a free slot
+    private int mask;
+    private int size;
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE;
+    private int maxCol = Integer.MIN_VALUE;
+
+    public SparseBoard() {
+        this(16);
+    }
+
+    public SparseBoard(int expectedStones) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedStones * 2) - 1) << 1;
+        keys = new long[capacity];
+        sides = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    static int rowOf(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int colOf(long key) {
+        return (int) key;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slotOf(long key) {
+        int slot = hash(key) & mask;
+        while (sides[slot] != ThreatEvaluator.EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public int get(int row, int col) {
+        return sides[slotOf(key(row, col))];
+    }
+
+    public boolean isEmpty(int row, int col) {
+        return get(row, col) == ThreatEvaluator.EMPTY;
+    }
+
+    // Places a stone; false if the cell is already occupied.
+    public boolean place(int row, int col, int side) {
+        long key = key(row, col);
+        int slot = slotOf(key);
+        if (sides[slot] != ThreatEvaluator.EMPTY) {
+            return false;
+        }
+        keys[slot] = key;
+        sides[slot] = (byte) side;
+        size++;
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+        if (size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return true;
+    }
+
+    public boolean remove(int row, int col) {
+        int slot = slotOf(key(row, col));
+        if (sides[slot] == ThreatEvaluator.EMPTY) {
+            return false;
+        }
+        // Backward-shift deletion keeps every probe sequence unbroken without tombstones.
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (sides[next] != ThreatEvaluator.EMPTY) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                sides[hole] = sides[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        sides[hole] = ThreatEvaluator.EMPTY;
+        size--;
+        if (row == minRow || row == maxRow || col == minCol || col == maxCol) {
+            recomputeBounds();
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(sides, (byte) ThreatEvaluator.EMPTY);
+        size = 0;
+        minRow = minCol = Integer.MAX_VALUE;
+        maxRow = maxCol = Integer.MIN_VALUE;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        byte[] oldSides = sides;
+        keys = new long[capacity];
+        sides = new byte[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSides[i] != ThreatEvaluator.EMPTY) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sides[slot] = oldSides[i];
+            }
+        }
+    }
+
+    private void recomputeBounds() {
+        minRow = minCol = Integer.MAX_VALUE;
+        maxRow = maxCol = Integer.MIN_VALUE;
+        for (int i = 0; i < keys.length; i++) {
+            if (sides[i] != ThreatEvaluator.EMPTY) {
+                minRow = Math.min(minRow, rowOf(keys[i]));
+                maxRow = Math.max(maxRow, rowOf(keys[i]));
+                minCol = Math.min(minCol, colOf(keys[i]));
+                maxCol = Math.max(maxCol, colOf(keys[i]));
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Bounding box of all stones; empty boards report MAX_VALUE/MIN_VALUE.
+    public int getMinRow() {
+        return minRow;
+    }
+
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    public int getMinCol() {
+        return minCol;
+    }
+
+    public int getMaxCol() {
+        return maxCol;
+    }
+
+    public void forEach(StoneVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (sides[i] != ThreatEvaluator.EMPTY) {
+                visitor.visit(rowOf(keys[i]), colOf(keys[i]), sides[i]);
+            }
+        }
+    }
+
+    // Stones of side in a row starting next to (row, col) and walking by (dr, dc).
+    public int run(int row, int col, int dr, int dc, int side) {
+        int count = 0;
+        for (int r = row + dr, c = col + dc; get(r, c) == side; r += dr, c += dc) {
+            count++;
+        }
+        return count;
+    }
+
+    // Whether a stone of side at (row, col) would be part of marksToWin in a row.
+    public boolean completesLine(int row, int col, int side, int marksToWin) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] d : directions) {
+            if (1 + run(row, col, d[0], d[1], side) + run(row, col, -d[0], -d[1], side) >= marksToWin) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Cells of a run of marksToWin stones of side, or null; only stones that start a run are walked.
+    public int[][] findLine(int side, int marksToWin) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int i = 0; i < keys.length; i++) {
+            if (sides[i] != side) {
+                continue;
+            }
+            int row = rowOf(keys[i]);
+            int col = colOf(keys[i]);
+            for (int[] d : directions) {
+                if (get(row - d[0], col - d[1]) == side || 1 + run(row, col, d[0], d[1], side) < marksToWin) {
+                    continue;
+                }
+                int[][] line = new int[marksToWin][];
+                for (int k = 0; k < marksToWin; k++) {
+                    line[k] = new int[]{row + d[0] * k, col + d[1] * k};
+                }
+                return line;
+            }
+        }
+        return null;
+    }
+
+    // Empty cells within distance of any stone and inside [0, limit) on both axes (no limit when
+    // limit <= 0), as packed keys.
+    public long[] candidates(int distance, int limit) {
+        SparseBoard seen = new SparseBoard(size * (2 * distance + 1) * (2 * distance + 1));
+        long[] result = new long[16];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (sides[i] == ThreatEvaluator.EMPTY) {
+                continue;
+            }
+            int row = rowOf(keys[i]);
+            int col = colOf(keys[i]);
+            for (int r = row - distance; r <= row + distance; r++) {
+                for (int c = col - distance; c <= col + distance; c++) {
+                    if (limit > 0 && (r < 0 || c < 0 || r >= limit || c >= limit)) {
+                        continue;
+                    }
+                    if (isEmpty(r, c) && seen.place(r, c, 1)) {
+                        if (count == result.length) {
+                            result = Arrays.copyOf(result, count * 2);
+                        }
+                        result[count++] = key(r, c);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,344 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Fans game events out to any number of Flow subscribers (dashboards, replays, commentators).
+// Each subscriber has its own bounded buffer drained on a shared executor as it requests more, a
+// few events per pass; subscribers that are slow to take them are moved to a separate executor.
+// Every event carries the whole board, so when a buffer is full the buffered board updates are
+// conflated away and only round results plus the newest state are kept. publish() never waits
+// for a subscriber.
+public class SpectatorHub implements Flow.Publisher<SpectatorHub.Event>, AutoCloseable {
+    public enum Type { MOVE, UNDO, RESET, ROUND_OVER }
+
+    public static final class Event {
+        public final long sequence;
+        public final Type type;
+        public final String board;      // row by row, X, O and '.'
+        public final int cell;          // cell of the move, -1 if none
+        public final String symbol;
+        public final int round;
+        public final int playerScore;
+        public final int opponentScore;
+        public final int drawCount;
+        public final String result;     // winner's symbol or "DRAW" for ROUND_OVER, otherwise null
+
+        Event(long sequence, Type type, String board, int cell, String symbol, int round,
+              int playerScore, int opponentScore, int drawCount, String result) {
+            this.sequence = sequence;
+            this.type = type;
+            this.board = board;
+            this.cell = cell;
+            this.symbol = symbol;
+            this.round = round;
+            this.playerScore = playerScore;
+            this.opponentScore = opponentScore;
+            this.drawCount = drawCount;
+            this.result = result;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + type + " " + board + (cell >= 0 ? " " + symbol + "@" + cell : "")
+                    + (result != null ? " " + result : "") + " round " + round
+                    + " " + playerScore + "-" + opponentScore + "-" + drawCount;
+        }
+    }
+
+    private static final int BATCH = 8;
+    private static final long SLOW_EVENT_NANOS = 50_000;
+
+    private final Executor executor;
+    private final Executor slowExecutor;
+    private final int bufferSize;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private volatile boolean closed;
+
+    // Subscribers whose onNext took longer than SLOW_EVENT_NANOS per event in their last drain pass
+    // are drained on slowExecutor until they speed up again, so they do not queue ahead of fast ones.
+    public SpectatorHub(Executor executor, Executor slowExecutor, int bufferSize) {
+        this.executor = executor;
+        this.slowExecutor = slowExecutor;
+        this.bufferSize = Math.max(2, bufferSize);
+    }
+
+    public SpectatorHub(Executor executor, int bufferSize) {
+        this(executor, executor, bufferSize);
+    }
+
+    public SpectatorHub() {
+        this(deliveryPool("spectator-delivery", Math.max(1, Runtime.getRuntime().availableProcessors())),
+                deliveryPool("spectator-slow", 1), 32);
+    }
+
+    private static ExecutorService deliveryPool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Event> subscriber) {
+        Subscription subscription = new Subscription(subscriber);
+        if (closed) {
+            subscription.fail(new IllegalStateException("Hub closed"));
+        } else {
+            subscriptions.add(subscription);
+        }
+        subscription.schedule();
+    }
+
+    public Event publish(Type type, String board, int cell, String symbol, int round,
+                         int playerScore, int opponentScore, int drawCount, String result) {
+        Event event = new Event(sequence.incrementAndGet(), type, board, cell, symbol, round,
+                playerScore, opponentScore, drawCount, result);
+        if (!closed) {
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+        return event;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getConflated() {
+        return conflated.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super Event> subscriber;
+        private final ArrayDeque<Event> buffer = new ArrayDeque<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicLong demand = new AtomicLong();
+        private boolean subscribed;
+        private volatile boolean slow;
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+        Subscription(Flow.Subscriber<? super Event> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(Event event) {
+            synchronized (buffer) {
+                if (buffer.size() >= bufferSize) {
+                    conflate();
+                }
+                buffer.addLast(event);
+            }
+            if (demand.get() > 0) {
+                schedule();
+            }
+        }
+
+        // Drops buffered board updates (the new event supersedes them) but keeps round results,
+        // falling back to the oldest event if the buffer holds nothing else.
+        private void conflate() {
+            int before = buffer.size();
+            buffer.removeIf(e -> e.type != Type.ROUND_OVER);
+            if (buffer.size() >= bufferSize) {
+                buffer.pollFirst();
+            }
+            conflated.add(before - buffer.size());
+        }
+
+        void complete() {
+            completed = true;
+            schedule();
+        }
+
+        void fail(Throwable t) {
+            error = t;
+            schedule();
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    (slow ? slowExecutor : executor).execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    subscriptions.remove(this);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                drain();
+            } catch (RuntimeException e) {
+                cancel();
+            } finally {
+                scheduled.set(false);
+            }
+            boolean pending;
+            synchronized (buffer) {
+                pending = !buffer.isEmpty() && demand.get() > 0;
+            }
+            if (!cancelled && (pending || error != null || completed && isEmpty())) {
+                schedule();
+            }
+        }
+
+        private boolean isEmpty() {
+            synchronized (buffer) {
+                return buffer.isEmpty();
+            }
+        }
+
+        // Delivers at most BATCH events and then gives the thread back (run() requeues what is
+        // left), so a slow subscriber cannot hold a delivery thread while fast ones conflate. A pass
+        // that turns out slow ends at once and the rest goes to slowExecutor.
+        private void drain() {
+            long start = System.nanoTime();
+            int sent = 0;
+            while (sent < BATCH && !cancelled) {
+                if (error != null) {
+                    cancelled = true;
+                    subscriptions.remove(this);
+                    subscriber.onError(error);
+                    return;
+                }
+                Event next;
+                synchronized (buffer) {
+                    next = demand.get() > 0 ? buffer.pollFirst() : null;
+                }
+                if (next == null) {
+                    if (completed && isEmpty()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                demand.decrementAndGet();
+                delivered.increment();
+                subscriber.onNext(next);
+                sent++;
+                slow = (System.nanoTime() - start) / sent > SLOW_EVENT_NANOS;
+                if (slow) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("request must be positive: " + n));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (buffer) {
+                buffer.clear();
+            }
+        }
+    }
+
+    // Usage: java SpectatorHub [subscribers] [moves]
+    // Publishes moves of one game to many local subscribers, a tenth of which are slow, and reports
+    // how long publish() took, how much was conflated and what share of the events the fast
+    // subscribers received.
+    public static void main(String[] args) throws Exception {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        SpectatorHub hub = new SpectatorHub();
+        CountDownLatch done = new CountDownLatch(subscribers);
+        LongAdder received = new LongAdder();
+        LongAdder fastReceived = new LongAdder();
+        int fast = subscribers - (subscribers + 9) / 10;
+        for (int i = 0; i < subscribers; i++) {
+            boolean slow = i % 10 == 0;
+            hub.subscribe(new Flow.Subscriber<Event>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription s) {
+                    subscription = s;
+                    s.request(slow ? 1 : Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(Event event) {
+                    received.increment();
+                    if (slow) {
+                        LockSupport.parkNanos(200_000);
+                        subscription.request(1);
+                    } else {
+                        fastReceived.increment();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    done.countDown();
+                }
+            });
+        }
+        Random rand = new Random(1);
+        char[] board = new char[9];
+        long worst = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < moves; i++) {
+            if (i % 9 == 0) {
+                Arrays.fill(board, '.');
+            }
+            int cell = rand.nextInt(9);
+            board[cell] = (i & 1) == 0 ? 'X' : 'O';
+            long t = System.nanoTime();
+            if (i % 9 == 8) {
+                hub.publish(Type.ROUND_OVER, new String(board), -1, null, i / 9 + 1, 0, 0, i / 9 + 1, "DRAW");
+            } else {
+                hub.publish(Type.MOVE, new String(board), cell, String.valueOf(board[cell]), i / 9 + 1, 0, 0, i / 9, null);
+            }
+            worst = Math.max(worst, System.nanoTime() - t);
+        }
+        long publishNanos = System.nanoTime() - start;
+        hub.close();
+        done.await(60, TimeUnit.SECONDS);
+        System.out.printf("%d subscribers, %d events: publish avg %.1f us, worst %.1f ms; delivered %d, conflated %d;"
+                        + " fast subscribers got %.1f%%%n",
+                subscribers, moves, publishNanos / 1e3 / moves, worst / 1e6, received.sum(), hub.getConflated(),
+                fast == 0 ? 100.0 : 100.0 * fastReceived.sum() / fast / moves);
+    }
+}
@@ -0,0 +1,360 @@
+import java.util.*;
+
+public class ThreatEvaluator {
+    public static final int EMPTY = 0;
+    public static final int X = 1;
+    public static final int O = 2;
+    public static final int WIN_SCORE = 1_000_000;
+    private static final int DOUBLE_THREAT = 50_000;
+
+    private final int boardSize;
+    private final int marksToWin;
+    private final int[] cells;
+    private final int[][] windows;      // window index -> cells in the window
+    private final int[][] cellWindows;  // cell index -> windows passing through it
+    private final int[] xCount;
+    private final int[] oCount;
+    private final int[] patternTable;   // (xCount, oCount) -> score from X's point of view
+    private final int[] fours = new int[3];     // windows one mark short of a win, per side
+    private final int[] complete = new int[3];  // finished windows, per side
+    private int score;
+    private int stones;
+
+    public ThreatEvaluator(int boardSize, int marksToWin) {
+        if (marksToWin < 3 || marksToWin > boardSize) {
+            throw new IllegalArgumentException("Marks to win must be between 3 and " + boardSize);
+        }
+        this.boardSize = boardSize;
+        this.marksToWin = marksToWin;
+        this.cells = new int[boardSize * boardSize];
+        this.windows = buildWindows(boardSize, marksToWin);
+        this.cellWindows = buildCellWindows(windows, cells.length);
+        this.xCount = new int[windows.length];
+        this.oCount = new int[windows.length];
+        this.patternTable = buildPatternTable(marksToWin);
+    }
+
+    static int[][] buildWindows(int size, int k) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        List<int[]> result = new ArrayList<>();
+        for (int[] d : directions) {
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    int endR = r + d[0] * (k - 1);
+                    int endC = c + d[1] * (k - 1);
+                    if (endR < 0 || endR >= size || endC < 0 || endC >= size) {
+                        continue;
+                    }
+                    int[] window = new int[k];
+                    for (int i = 0; i < k; i++) {
+                        window[i] = (r + d[0] * i) * size + (c + d[1] * i);
+                    }
+                    result.add(window);
+                }
+            }
+        }
+        return result.toArray(new int[0][]);
+    }
+
+    private static int[][] buildCellWindows(int[][] windows, int cellCount) {
+        int[] counts = new int[cellCount];
+        for (int[] window : windows) {
+            for (int cell : window) {
+                counts[cell]++;
+            }
+        }
+        int[][] result = new int[cellCount][];
+        for (int i = 0; i < cellCount; i++) {
+            result[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int w = 0; w < windows.length; w++) {
+            for (int cell : windows[w]) {
+                result[cell][counts[cell]++] = w;
+            }
+        }
+        return result;
+    }
+
+    private static int[] buildPatternTable(int k) {
+        // Open twos, threes and fours are weighted by how far they are from a win, so the
+        // same table works for any marksToWin.
+        int[] weight = new int[k + 1];
+        for (int c = 1; c <= k; c++) {
+            int gap = k - c;
+            weight[c] = gap == 0 ? WIN_SCORE : gap == 1 ? 10_000 : gap == 2 ? 1_000 : gap == 3 ? 100 : c;
+        }
+        int[] table = new int[(k + 1) * (k + 1)];
+        for (int x = 0; x <= k; x++) {
+            for (int o = 0; o + x <= k; o++) {
+                if (x > 0 && o == 0) {
+                    table[x * (k + 1) + o] = weight[x];
+                } else if (o > 0 && x == 0) {
+                    table[x * (k + 1) + o] = -weight[o];
+                }
+            }
+        }
+        return table;
+    }
+
+    public void load(int[] position) {
+        Arrays.fill(cells, EMPTY);
+        Arrays.fill(xCount, 0);
+        Arrays.fill(oCount, 0);
+        Arrays.fill(fours, 0);
+        Arrays.fill(complete, 0);
+        score = 0;
+        stones = 0;
+        for (int i = 0; i < position.length; i++) {
+            if (position[i] != EMPTY) {
+                makeMove(i, position[i]);
+            }
+        }
+    }
+
+    public void makeMove(int cell, int side) {
+        cells[cell] = side;
+        stones++;
+        for (int w : cellWindows[cell]) {
+            removeWindow(w);
+            if (side == X) {
+                xCount[w]++;
+            } else {
+                oCount[w]++;
+            }
+            addWindow(w);
+        }
+    }
+
+    public void undoMove(int cell) {
+        int side = cells[cell];
+        cells[cell] = EMPTY;
+        stones--;
+        for (int w : cellWindows[cell]) {
+            removeWindow(w);
+            if (side == X) {
+                xCount[w]--;
+            } else {
+                oCount[w]--;
+            }
+            addWindow(w);
+        }
+    }
+
+    private void removeWindow(int w) {
+        score -= patternTable[xCount[w] * (marksToWin + 1) + oCount[w]];
+        countThreats(w, -1);
+    }
+
+    private void addWindow(int w) {
+        score += patternTable[xCount[w] * (marksToWin + 1) + oCount[w]];
+        countThreats(w, 1);
+    }
+
+    private void countThreats(int w, int delta) {
+        if (oCount[w] == 0) {
+            if (xCount[w] == marksToWin) complete[X] += delta;
+            else if (xCount[w] == marksToWin - 1) fours[X] += delta;
+        } else if (xCount[w] == 0) {
+            if (oCount[w] == marksToWin) complete[O] += delta;
+            else if (oCount[w] == marksToWin - 1) fours[O] += delta;
+        }
+    }
+
+    public int evaluate(int sideToMove) {
+        int opponent = opponent(sideToMove);
+        if (complete[sideToMove] > 0) return WIN_SCORE;
+        if (complete[opponent] > 0) return -WIN_SCORE;
+        if (fours[sideToMove] > 0) return WIN_SCORE / 2;
+        int value = sideToMove == X ? score : -score;
+        if (fours[opponent] >= 2) {
+            value -= DOUBLE_THREAT;
+        }
+        return value;
+    }
+
+    public int winner() {
+        if (complete[X] > 0) return X;
+        if (complete[O] > 0) return O;
+        return EMPTY;
+    }
+
+    public boolean isFull() {
+        return stones == cells.length;
+    }
+
+    public int getCell(int cell) {
+        return cells[cell];
+    }
+
+    public int getStoneCount() {
+        return stones;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getMarksToWin() {
+        return marksToWin;
+    }
+
+    public static int opponent(int side) {
+        return side == X ? O : X;
+    }
+
+    // Immediate winning cell for side, or -1.
+    public int findWinningCell(int side) {
+        if (fours[side] == 0) {
+            return -1;
+        }
+        for (int w = 0; w < windows.length; w++) {
+            if (ownCount(w, side) == marksToWin - 1 && ownCount(w, opponent(side)) == 0) {
+                for (int cell : windows[w]) {
+                    if (cells[cell] == EMPTY) {
+                        return cell;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int ownCount(int w, int side) {
+        return side == X ? xCount[w] : oCount[w];
+    }
+
+    // Cells that would complete a window for side, limited to windows through the given cell.
+    private int threatCells(int cell, int side, int[] out) {
+        int n = 0;
+        for (int w : cellWindows[cell]) {
+            if (ownCount(w, side) == marksToWin - 1 && ownCount(w, opponent(side)) == 0) {
+                for (int c : windows[w]) {
+                    if (cells[c] == EMPTY) {
+                        boolean seen = false;
+                        for (int i = 0; i < n; i++) {
+                            if (out[i] == c) {
+                                seen = true;
+                                break;
+                            }
+                        }
+                        if (!seen && n < out.length) {
+                            out[n++] = c;
+                        }
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    // Threat-space search restricted to continuous fours: every attacking move must leave a
+    // single-cell threat (forcing exactly one reply) or a double threat. Returns the first
+    // cell of a forced win for side, or -1 if none is found within maxDepth attacking moves.
+    public int findThreatSpaceWin(int side, int maxDepth) {
+        int immediate = findWinningCell(side);
+        if (immediate >= 0) {
+            return immediate;
+        }
+        if (fours[opponent(side)] > 0) {
+            return -1;
+        }
+        int[] threats = new int[2];
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != EMPTY || !createsFour(cell, side)) {
+                continue;
+            }
+            if (threatSearch(cell, side, maxDepth, threats)) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private boolean createsFour(int cell, int side) {
+        for (int w : cellWindows[cell]) {
+            if (ownCount(w, side) == marksToWin - 2 && ownCount(w, opponent(side)) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean threatSearch(int cell, int side, int depth, int[] threats) {
+        int opponent = opponent(side);
+        makeMove(cell, side);
+        try {
+            int n = threatCells(cell, side, threats);
+            if (n >= 2) {
+                return true;
+            }
+            if (n == 0 || depth <= 1) {
+                return false;
+            }
+            int reply = threats[0];
+            makeMove(reply, opponent);
+            try {
+                if (complete[opponent] > 0 || fours[opponent] > 0) {
+                    return false;
+                }
+                for (int next = 0; next < cells.length; next++) {
+                    if (cells[next] == EMPTY && createsFour(next, side)
+                            && threatSearch(next, side, depth - 1, new int[2])) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                undoMove(reply);
+            }
+        } finally {
+            undoMove(cell);
+        }
+    }
+
+    // Empty cells within distance 2 of an existing mark, or the centre on an empty board.
+    public int[] candidateMoves() {
+        if (stones == 0) {
+            return new int[]{(boardSize / 2) * boardSize + boardSize / 2};
+        }
+        int[] result = new int[cells.length - stones];
+        int n = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != EMPTY) {
+                continue;
+            }
+            int r = cell / boardSize;
+            int c = cell % boardSize;
+            boolean near = false;
+            for (int dr = -2; dr <= 2 && !near; dr++) {
+                for (int dc = -2; dc <= 2; dc++) {
+                    int nr = r + dr;
+                    int nc = c + dc;
+                    if (nr >= 0 && nr < boardSize && nc >= 0 && nc < boardSize && cells[nr * boardSize + nc] != EMPTY) {
+                        near = true;
+                        break;
+                    }
+                }
+            }
+            if (near) {
+                result[n++] = cell;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    // How much playing cell changes the pattern score for side, counting both attack and defence.
+    public int moveScore(int cell, int side) {
+        int k1 = marksToWin + 1;
+        int total = 0;
+        for (int w : cellWindows[cell]) {
+            int x = xCount[w];
+            int o = oCount[w];
+            int before = patternTable[x * k1 + o];
+            int attack = side == X ? patternTable[(x + 1) * k1 + o] - before : before - patternTable[x * k1 + o + 1];
+            int defence = side == X ? before - patternTable[x * k1 + o + 1] : patternTable[(x + 1) * k1 + o] - before;
+            total += attack + Math.abs(defence) / 2;
+        }
+        return total;
+    }
+}
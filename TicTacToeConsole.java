@@ -0,0 +1,314 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+// Terminal front-end over TicTacToeLogic that never touches AWT or Swing, so it starts in a bare
+// JVM on servers and in containers. Interactively it prints the board and prompts for moves; with
+// --script it reads the same commands from a file (or "-" for stdin) without prompts and prints
+// one line per finished round plus the final score, for pipelines and smoke tests. Rounds follow
+// the GUI: the player moves first, the computer answers, and the game ends after the last round.
+// The logic's own step-by-step logging is discarded unless --verbose is given.
+public class TicTacToeConsole {
+    private final TicTacToeLogic logic;
+    private final PrintStream out;
+    private final boolean interactive;
+
+    public TicTacToeConsole(TicTacToeLogic logic, PrintStream out, boolean interactive) {
+        this.logic = logic;
+        this.out = out;
+        this.interactive = interactive;
+    }
+
+    // Runs commands until end of input or "quit"; returns false when a script command failed.
+    public boolean run(BufferedReader in) throws IOException {
+        if (interactive) {
+            out.println("Tic Tac Toe " + logic.getBoardSize() + "x" + logic.getBoardSize() + ", " + logic.getMarksToWin()
+                    + " in a row. Enter moves as \"row col\" (from 1), or \"help\".");
+            printBoard();
+            prompt();
+        }
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                if (interactive) {
+                    prompt();
+                }
+                continue;
+            }
+            if (line.equals("quit") || line.equals("exit")) {
+                break;
+            }
+            String error = execute(line);
+            if (error != null) {
+                if (!interactive) {
+                    System.err.println("line " + lineNumber + ": " + error + ": " + line);
+                    return false;
+                }
+                out.println(error);
+            }
+            if (interactive) {
+                prompt();
+            }
+        }
+        return true;
+    }
+
+    // Applies one command; returns an error message, or null if it was accepted.
+    String execute(String line) {
+        String[] words = line.split("[\\s,]+");
+        switch (words[0]) {
+            case "help":
+                out.println("row col   place your mark (rows and columns count from 1)");
+                out.println("undo      take back the last move (and the computer's reply)");
+                out.println("redo      play an undone move again");
+                out.println("restart   start the current round over");
+                out.println("replay    start a new game with scores reset");
+                out.println("level n   computer difficulty: 1 Easy, 2 Medium, 3 Hard, 4 Expert");
+                out.println("show      print the board and score");
+                out.println("quit      leave");
+                return null;
+            case "show":
+                printBoard();
+                out.println(scoreText());
+                return null;
+            case "undo":
+                if (logic.isGameOver()) {
+                    return "the round is over";
+                }
+                if (!logic.undoLastMove()) {
+                    return "nothing to undo";
+                }
+                printBoardIfInteractive();
+                return null;
+            case "redo":
+                if (!logic.redoLastMove()) {
+                    return "nothing to redo";
+                }
+                printBoardIfInteractive();
+                return null;
+            case "restart":
+                logic.restartRound();
+                printBoardIfInteractive();
+                return null;
+            case "replay":
+                logic.replayGame();
+                printBoardIfInteractive();
+                return null;
+            case "level":
+                if (words.length != 2 || !words[1].matches("[1-4]")) {
+                    return "level takes 1 to 4";
+                }
+                logic.setDifficultyLevel(Integer.parseInt(words[1]));
+                return null;
+            default:
+                if (words.length != 2 || !words[0].matches("\\d+") || !words[1].matches("\\d+")) {
+                    return "unknown command";
+                }
+                return play(Integer.parseInt(words[0]) - 1, Integer.parseInt(words[1]) - 1);
+        }
+    }
+
+    private String play(int row, int col) {
+        if (logic.isGameOver()) {
+            return logic.getCurrentRound() >= logic.getMaxRounds() ? "the game is over; type replay" : "the round is over";
+        }
+        if (logic.isVsComputer() && !logic.isPlayerTurn()) {
+            return "it is the computer's turn";
+        }
+        String symbol = logic.isPlayerTurn() ? logic.getPlayerSymbol() : logic.getOpponentSymbol();
+        if (row < 0 || col < 0 || row >= logic.getBoardSize() || col >= logic.getBoardSize()) {
+            return "no such cell";
+        }
+        if (!logic.makeMove(row, col, symbol)) {
+            return "that cell is taken";
+        }
+        if (finishTurn(symbol)) {
+            return null;
+        }
+        if (logic.isVsComputer() && !logic.isPlayerTurn()) {
+            logic.computerMove();
+            if (interactive) {
+                int cell = GameTree.cellOf(logic.getHistorySnapshot().getLastMove());
+                out.println("Computer plays " + (cell / logic.getBoardSize() + 1) + " " + (cell % logic.getBoardSize() + 1));
+            }
+            if (finishTurn(logic.getComputerSymbol())) {
+                return null;
+            }
+        }
+        printBoardIfInteractive();
+        return null;
+    }
+
+    // Scores a win or draw by symbol and moves on to the next round; false if play continues.
+    private boolean finishTurn(String symbol) {
+        String result;
+        if (logic.checkWinner(symbol)) {
+            logic.updateScore(symbol);
+            result = symbol + " wins (" + nameOf(symbol) + ")";
+        } else if (logic.isBoardFull()) {
+            logic.updateScore("");
+            result = "draw";
+        } else {
+            logic.switchTurn();
+            return false;
+        }
+        if (interactive) {
+            printBoard();
+        }
+        short[] moves = logic.getHistorySnapshot().getMoves();
+        StringBuilder line = new StringBuilder("round " + logic.getCurrentRound() + ": " + result + " in " + moves.length + " moves:");
+        for (short move : moves) {
+            int cell = GameTree.cellOf(move);
+            line.append(' ').append(cell / logic.getBoardSize() + 1).append(',').append(cell % logic.getBoardSize() + 1);
+        }
+        out.println(line);
+        if (logic.getCurrentRound() >= logic.getMaxRounds()) {
+            out.println("game over: " + scoreText());
+        } else {
+            logic.nextRound();
+        }
+        return true;
+    }
+
+    private String nameOf(String symbol) {
+        if (symbol.equals(logic.getPlayerSymbol())) {
+            return logic.getPlayerName();
+        }
+        return logic.isVsComputer() ? "Computer" : logic.getOpponentName();
+    }
+
+    private String scoreText() {
+        return logic.getPlayerName() + " " + logic.getPlayerScore() + ", "
+                + (logic.isVsComputer() ? "Computer" : logic.getOpponentName()) + " " + logic.getOpponentScore()
+                + ", draws " + logic.getDrawCount();
+    }
+
+    private void printBoardIfInteractive() {
+        if (interactive) {
+            printBoard();
+        }
+    }
+
+    private void printBoard() {
+        int size = logic.getBoardSize();
+        StringBuilder sb = new StringBuilder("   ");
+        for (int c = 1; c <= size; c++) {
+            sb.append(String.format("%3d", c));
+        }
+        sb.append('\n');
+        for (int r = 0; r < size; r++) {
+            sb.append(String.format("%3d", r + 1));
+            for (int c = 0; c < size; c++) {
+                String mark = logic.getMark(r, c);
+                sb.append("  ").append(mark.isEmpty() ? "." : mark);
+            }
+            sb.append('\n');
+        }
+        out.print(sb);
+    }
+
+    private void prompt() {
+        if (logic.isGameOver()) {
+            out.print("> ");
+        } else if (logic.isPlayerTurn()) {
+            out.print(logic.getPlayerName() + " (" + logic.getPlayerSymbol() + ")> ");
+        } else {
+            out.print(logic.getOpponentName() + " (" + logic.getOpponentSymbol() + ")> ");
+        }
+        out.flush();
+    }
+
+    // Usage: java TicTacToeConsole [--size <n>] [--k <marks>] [--level <1-4>] [--two-player] [--rounds <n>]
+    //        [--name <player>] [--opponent <name>] [--script <file>|-] [--archive <dir>] [--stats <file>] [--verbose]
+    // Exits with status 1 when a script command is rejected.
+    public static void main(String[] args) throws IOException {
+        PrintStream out = System.out;
+        boolean verbose = false;
+        for (String arg : args) {
+            verbose |= arg.equals("--verbose");
+        }
+        if (!verbose) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        TicTacToeLogic logic = new TicTacToeLogic();
+        logic.setMaxRounds(1);
+        logic.setDifficultyLevel(EngineAI.HARD);
+        String script = null;
+        GameArchive archive = null;
+        PlayerStatsStore stats = null;
+        int size = 3;
+        int marks = -1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--size":
+                        size = Integer.parseInt(args[++i]);
+                        break;
+                    case "--k":
+                        marks = Integer.parseInt(args[++i]);
+                        break;
+                    case "--level":
+                        logic.setDifficultyLevel(Integer.parseInt(args[++i]));
+                        break;
+                    case "--two-player":
+                        logic.setVsComputer(false);
+                        break;
+                    case "--rounds":
+                        logic.setMaxRounds(Integer.parseInt(args[++i]));
+                        break;
+                    case "--name":
+                        logic.setPlayerName(args[++i]);
+                        break;
+                    case "--opponent":
+                        logic.setOpponentName(args[++i]);
+                        break;
+                    case "--script":
+                        script = args[++i];
+                        break;
+                    case "--archive":
+                        archive = new GameArchive(Paths.get(args[++i]), true);
+                        logic.setArchive(archive);
+                        break;
+                    case "--stats":
+                        stats = new PlayerStatsStore(Paths.get(args[++i]));
+                        logic.setPlayerStats(stats);
+                        break;
+                    case "--verbose":
+                        break;
+                    default:
+                        out.println("Unknown option " + args[i]);
+                        System.exit(2);
+                }
+            }
+            logic.init(size);
+            if (marks != -1) {
+                if (marks < 3 || marks > size) {
+                    throw new IllegalArgumentException("--k must be between 3 and " + size);
+                }
+                logic.setMarksToWin(marks);
+            }
+        } catch (IOException | RuntimeException e) {
+            out.println("Bad arguments: " + e.getMessage());
+            System.exit(2);
+        }
+        boolean interactive = script == null;
+        Reader reader = script == null || script.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : new InputStreamReader(new FileInputStream(script), StandardCharsets.UTF_8);
+        boolean ok;
+        try (BufferedReader in = new BufferedReader(reader)) {
+            ok = new TicTacToeConsole(logic, out, interactive).run(in);
+        }
+        if (archive != null) {
+            archive.close();
+        }
+        if (stats != null) {
+            stats.close();
+        }
+        out.flush();
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -3,6 +3,7 @@ import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import javax.swing.*;
@@ -15,8 +16,14 @@ public class TicTacToeGUI extends JFrame {
     private JLabel statusLabel;
     private JLabel scoreLabel;
     private JLabel roundLabel;
-    private JButton undoButton, restartRoundButton, replayButton, closeButton, modeToggleButton, saveButton, loadButton;
+    private JButton undoButton, redoButton, restartRoundButton, replayButton, closeButton, modeToggleButton, saveButton, loadButton, reviewButton, analyzeButton;
     private boolean darkMode = false;
+    private boolean analysisMode = false;
+    private PositionAnalyzer analyzer;
+    private NetTransport network;
+    private boolean networkHost;
+    private static GameArchive archive;     // shared by every window, including replays and loads
+    private static PlayerStatsStore playerStats;
 
     // Colors matching a cosmic teal-to-green theme
     private Color bgStart = new Color(10, 50, 60); // Deep teal
@@ -201,6 +208,8 @@ public class TicTacToeGUI extends JFrame {
         private String symbol = "";
         private float glowPhase = 0;
         private Color symbolColor = fgColor;
+        private String analysisLabel = "";
+        private Color heatColor;
 
         public CustomButton() {
             setContentAreaFilled(false);
@@ -226,6 +235,12 @@ public class TicTacToeGUI extends JFrame {
             repaint();
         }
 
+        public void setAnalysis(String label, Color heat) {
+            this.analysisLabel = label;
+            this.heatColor = heat;
+            repaint();
+        }
+
         @Override
         protected void paintComponent(Graphics g) {
             Graphics2D g2d = (Graphics2D) g.create();
@@ -239,6 +254,15 @@ public class TicTacToeGUI extends JFrame {
                 g2d.fillRoundRect(0, 0, w, h, 15, 15);
             }
 
+            if (symbol.isEmpty() && heatColor != null) {
+                g2d.setColor(heatColor);
+                g2d.fillRoundRect(0, 0, w, h, 15, 15);
+                g2d.setFont(new Font("Arial", Font.BOLD, Math.max(10, Math.min(w, h) / 4)));
+                g2d.setColor(Color.WHITE);
+                FontMetrics fm = g2d.getFontMetrics();
+                g2d.drawString(analysisLabel, (w - fm.stringWidth(analysisLabel)) / 2, (h - fm.getHeight()) / 2 + fm.getAscent());
+            }
+
             if (!symbol.isEmpty()) {
                 g2d.setFont(getFont());
                 g2d.setColor(symbolColor);
@@ -259,6 +283,230 @@ public class TicTacToeGUI extends JFrame {
         }
     }
 
+    // Seekable viewer for a saved match or the games of an archive. The scrubber jumps to any ply
+    // through ReplayTimeline keyframes, and only the cells that differ between the shown board and
+    // the target are repainted, so stepping, scrubbing and fast playback reuse the same buttons.
+    // Archive games are decoded one at a time when selected, found through the archive's sparse
+    // offset checkpoints.
+    private class ReplayWindow extends JDialog {
+        private static final long serialVersionUID = 1L;
+
+        private final GameArchive source;       // null for a saved match
+        private final boolean ownsSource;
+        private final JPanel board = new JPanel();
+        private final JSlider scrubber = new JSlider(0, 0, 0);
+        private final JLabel info = new JLabel(" ", SwingConstants.CENTER);
+        private final JButton playButton = new JButton("▶");
+        private final JComboBox<String> speed = new JComboBox<>(new String[]{"0.5x", "1x", "2x", "4x", "8x", "16x"});
+        private final Timer player = new Timer(500, e -> step());
+        private JSpinner gameNumber;
+        private ReplayTimeline timeline;
+        private CustomButton[] cells = new CustomButton[0];
+        private int[] shown = new int[0];       // board the buttons display, ThreatEvaluator encoding
+        private int[] target = new int[0];      // board being built for the next ply
+        private int ply;
+        private int highlighted = -1;
+        private String header = "";
+        private boolean adjusting;
+
+        ReplayWindow(String title, GameArchive source, boolean ownsSource) {
+            super(TicTacToeGUI.this, title, false);
+            this.source = source;
+            this.ownsSource = ownsSource;
+            setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+            getContentPane().setBackground(bgStart);
+            setLayout(new BorderLayout(5, 5));
+
+            JPanel top = new JPanel(new BorderLayout());
+            top.setOpaque(false);
+            top.setBorder(new EmptyBorder(8, 8, 0, 8));
+            info.setFont(new Font("Arial", Font.BOLD, 14));
+            info.setForeground(fgColor);
+            top.add(info, BorderLayout.CENTER);
+            if (source != null) {
+                long count = source.getGameCount();
+                gameNumber = new JSpinner(new SpinnerNumberModel(1, 1, (int) Math.min(count, Integer.MAX_VALUE), 1));
+                gameNumber.setToolTipText("Game number in the archive");
+                gameNumber.addChangeListener(e -> showArchiveGame((Integer) gameNumber.getValue() - 1));
+                JPanel picker = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+                picker.setOpaque(false);
+                JLabel label = new JLabel("Game (of " + count + "):");
+                label.setForeground(fgColor);
+                picker.add(label);
+                picker.add(gameNumber);
+                top.add(picker, BorderLayout.NORTH);
+            }
+            add(top, BorderLayout.NORTH);
+
+            board.setOpaque(false);
+            board.setBorder(new EmptyBorder(10, 10, 10, 10));
+            add(board, BorderLayout.CENTER);
+
+            scrubber.setOpaque(false);
+            scrubber.addChangeListener(e -> {
+                if (!adjusting) {
+                    showPly(scrubber.getValue());
+                }
+            });
+            JPanel controls = new JPanel(new FlowLayout(FlowLayout.CENTER, 6, 4));
+            controls.setOpaque(false);
+            controls.add(control("⏮", "First position", () -> showPly(0)));
+            controls.add(control("◀", "Previous move", () -> showPly(Math.max(0, ply - 1))));
+            playButton.setToolTipText("Play or pause");
+            playButton.addActionListener(e -> togglePlayback());
+            controls.add(playButton);
+            controls.add(control("▶|", "Next move", () -> showPly(Math.min(timeline.getLength(), ply + 1))));
+            controls.add(control("⏭", "Final position", () -> showPly(timeline.getLength())));
+            speed.setSelectedIndex(1);
+            speed.setToolTipText("Playback speed");
+            speed.addActionListener(e -> player.setDelay(playbackDelay()));
+            controls.add(speed);
+            JPanel bottom = new JPanel(new GridLayout(2, 1));
+            bottom.setOpaque(false);
+            bottom.setBorder(new EmptyBorder(0, 8, 8, 8));
+            bottom.add(scrubber);
+            bottom.add(controls);
+            add(bottom, BorderLayout.SOUTH);
+
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosed(WindowEvent e) {
+                    player.stop();
+                    if (ownsSource) {
+                        try {
+                            source.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            });
+            setSize(460, 560);
+            setLocationRelativeTo(TicTacToeGUI.this);
+        }
+
+        private JButton control(String text, String tip, Runnable action) {
+            JButton button = new JButton(text);
+            button.setToolTipText(tip);
+            button.addActionListener(e -> {
+                player.stop();
+                playButton.setText("▶");
+                action.run();
+            });
+            return button;
+        }
+
+        private int playbackDelay() {
+            double factor = Double.parseDouble(((String) speed.getSelectedItem()).replace("x", ""));
+            return (int) Math.max(10, 500 / factor);
+        }
+
+        private void togglePlayback() {
+            if (player.isRunning()) {
+                player.stop();
+                playButton.setText("▶");
+                return;
+            }
+            if (ply >= timeline.getLength()) {
+                showPly(0);
+            }
+            player.setDelay(playbackDelay());
+            player.start();
+            playButton.setText("⏸");
+        }
+
+        private void step() {
+            if (ply >= timeline.getLength()) {
+                player.stop();
+                playButton.setText("▶");
+                return;
+            }
+            showPly(ply + 1);
+        }
+
+        void showArchiveGame(int index) {
+            player.stop();
+            playButton.setText("▶");
+            try {
+                GameArchive.GameRecord record = source.read(source.gameOffset(index));
+                if (record == null) {
+                    info.setText("Game " + (index + 1) + " is incomplete");
+                    return;
+                }
+                String result = record.outcome == GameArchive.X_WINS ? "X won" : record.outcome == GameArchive.O_WINS ? "O won" : "draw";
+                String opponent = record.computerSide == ThreatEvaluator.EMPTY ? "two players"
+                        : "computer " + TicTacToeLogic.sideToSymbol(record.computerSide) + " on level " + record.difficulty;
+                showGame(record.boardSize, record.moves, record.boardSize + "x" + record.boardSize + ", "
+                        + record.marksToWin + " in a row, " + opponent + ", " + result);
+            } catch (IOException ex) {
+                info.setText("Could not read game " + (index + 1) + ": " + ex.getMessage());
+            }
+        }
+
+        void showGame(int boardSize, short[] moves, String header) {
+            this.header = header;
+            timeline = new ReplayTimeline(boardSize, moves);
+            if (cells.length != boardSize * boardSize) {
+                board.removeAll();
+                board.setLayout(new GridLayout(boardSize, boardSize, 6, 6));
+                cells = new CustomButton[boardSize * boardSize];
+                for (int i = 0; i < cells.length; i++) {
+                    CustomButton btn = new CustomButton();
+                    btn.setFocusable(false);
+                    btn.setBackground(new Color(50, 50, 50, 200));
+                    btn.setOpaque(true);
+                    btn.setBorder(new RoundedBorder(15));
+                    btn.setFont(new Font("Arial", Font.BOLD, Math.max(12, 160 / boardSize)));
+                    cells[i] = btn;
+                    board.add(btn);
+                }
+                shown = new int[cells.length];
+                target = new int[cells.length];
+                highlighted = -1;
+                board.revalidate();
+            }
+            ply = 0;
+            Arrays.fill(target, ThreatEvaluator.EMPTY);
+            refresh();
+            adjusting = true;
+            scrubber.setMaximum(moves.length);
+            scrubber.setValue(0);
+            adjusting = false;
+            showPly(0);
+        }
+
+        void showPly(int next) {
+            timeline.seek(target, ply, next);
+            ply = next;
+            refresh();
+            adjusting = true;
+            scrubber.setValue(ply);
+            adjusting = false;
+            info.setText("<html><center>" + header + "<br>Move " + ply + " / " + timeline.getLength() + "</center></html>");
+        }
+
+        // Repaints the buttons whose cell differs from target, and moves the last-move highlight.
+        private void refresh() {
+            for (int i = 0; i < cells.length; i++) {
+                if (shown[i] != target[i]) {
+                    shown[i] = target[i];
+                    String symbol = TicTacToeLogic.sideToSymbol(target[i]);
+                    cells[i].setSymbol(symbol);
+                    cells[i].setSymbolColor(symbol.equals("X") ? xColor : oColor);
+                }
+            }
+            int last = timeline.lastCell(ply);
+            if (last != highlighted) {
+                if (highlighted >= 0) {
+                    cells[highlighted].setGlowPhase(0);
+                }
+                if (last >= 0) {
+                    cells[last].setGlowPhase((float) (Math.PI / 2));
+                }
+                highlighted = last;
+            }
+        }
+    }
+
     // Rounded border for buttons
     private class RoundedBorder implements Border {
         private int radius;
@@ -288,6 +536,8 @@ public class TicTacToeGUI extends JFrame {
 
     public TicTacToeGUI() {
         logic = new TicTacToeLogic();
+        logic.setArchive(archive);
+        logic.setPlayerStats(playerStats);
         showConfigDialog();
         int panelWidth = 500;
         int panelHeight = 450;
@@ -310,10 +560,10 @@ public class TicTacToeGUI extends JFrame {
     private void showConfigDialog() {
         JDialog configDialog = new JDialog(this, "Game Settings", true);
         configDialog.setUndecorated(true);
-        configDialog.setSize(350, 250);
+        configDialog.setSize(350, 330);
         configDialog.setLocationRelativeTo(this);
 
-        TexturedPanel contentPane = new TexturedPanel(false, 350, 250);
+        TexturedPanel contentPane = new TexturedPanel(false, 350, 330);
         contentPane.setLayout(new BorderLayout());
         contentPane.setBorder(new EmptyBorder(20, 20, 20, 20));
         configDialog.setContentPane(contentPane);
@@ -323,20 +573,30 @@ public class TicTacToeGUI extends JFrame {
         titleLabel.setForeground(fgColor);
         contentPane.add(titleLabel, BorderLayout.NORTH);
 
-        JPanel settingsPanel = new JPanel(new GridLayout(3, 2, 10, 10));
+        JPanel settingsPanel = new JPanel(new GridLayout(5, 2, 10, 10));
         settingsPanel.setOpaque(false);
         settingsPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
 
         JLabel boardSizeLabel = new JLabel("Board Size:");
         boardSizeLabel.setForeground(fgColor);
         boardSizeLabel.setFont(new Font("Arial", Font.PLAIN, 14));
-        JSpinner boardSizeSpinner = new JSpinner(new SpinnerNumberModel(3, 3, 10, 1));
+        JSpinner boardSizeSpinner = new JSpinner(new SpinnerNumberModel(3, 3, TicTacToeLogic.MAX_BOARD_SIZE, 1));
         boardSizeSpinner.setFont(new Font("Arial", Font.PLAIN, 14));
         boardSizeSpinner.setBackground(new Color(50, 50, 50));
         boardSizeSpinner.setForeground(fgColor);
         ((JSpinner.DefaultEditor) boardSizeSpinner.getEditor()).getTextField().setBackground(new Color(50, 50, 50));
         ((JSpinner.DefaultEditor) boardSizeSpinner.getEditor()).getTextField().setForeground(fgColor);
 
+        JLabel marksLabel = new JLabel("Marks to Win:");
+        marksLabel.setForeground(fgColor);
+        marksLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+        JSpinner marksSpinner = new JSpinner(new SpinnerNumberModel(3, 3, TicTacToeLogic.MAX_BOARD_SIZE, 1));
+        marksSpinner.setFont(new Font("Arial", Font.PLAIN, 14));
+        marksSpinner.setBackground(new Color(50, 50, 50));
+        marksSpinner.setForeground(fgColor);
+        ((JSpinner.DefaultEditor) marksSpinner.getEditor()).getTextField().setBackground(new Color(50, 50, 50));
+        ((JSpinner.DefaultEditor) marksSpinner.getEditor()).getTextField().setForeground(fgColor);
+
         JLabel roundsLabel = new JLabel("Max Rounds:");
         roundsLabel.setForeground(fgColor);
         roundsLabel.setFont(new Font("Arial", Font.PLAIN, 14));
@@ -350,18 +610,31 @@ public class TicTacToeGUI extends JFrame {
         JLabel difficultyLabel = new JLabel("Difficulty:");
         difficultyLabel.setForeground(fgColor);
         difficultyLabel.setFont(new Font("Arial", Font.PLAIN, 14));
-        JComboBox<String> difficultyCombo = new JComboBox<>(new String[]{"Easy", "Medium", "Hard"});
+        JComboBox<String> difficultyCombo = new JComboBox<>(new String[]{"Easy", "Medium", "Hard", "Expert"});
         difficultyCombo.setFont(new Font("Arial", Font.PLAIN, 14));
         difficultyCombo.setBackground(new Color(50, 50, 50));
         difficultyCombo.setForeground(fgColor);
 
         settingsPanel.add(boardSizeLabel);
         settingsPanel.add(boardSizeSpinner);
+        settingsPanel.add(marksLabel);
+        settingsPanel.add(marksSpinner);
         settingsPanel.add(roundsLabel);
         settingsPanel.add(roundsSpinner);
         settingsPanel.add(difficultyLabel);
         settingsPanel.add(difficultyCombo);
 
+        JLabel ponderLabel = new JLabel("Pondering:");
+        ponderLabel.setForeground(fgColor);
+        ponderLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+        JCheckBox ponderCheck = new JCheckBox("Think on my turn");
+        ponderCheck.setToolTipText("Hard difficulty: the computer searches while you think");
+        ponderCheck.setFont(new Font("Arial", Font.PLAIN, 14));
+        ponderCheck.setOpaque(false);
+        ponderCheck.setForeground(fgColor);
+        settingsPanel.add(ponderLabel);
+        settingsPanel.add(ponderCheck);
+
         contentPane.add(settingsPanel, BorderLayout.CENTER);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -374,8 +647,10 @@ public class TicTacToeGUI extends JFrame {
         startButton.setFocusPainted(false);
         startButton.addActionListener(e -> {
             logic.init((Integer) boardSizeSpinner.getValue());
+            logic.setMarksToWin(Math.min((Integer) marksSpinner.getValue(), logic.getBoardSize()));
             logic.setMaxRounds((Integer) roundsSpinner.getValue());
             logic.setDifficultyLevel(difficultyCombo.getSelectedIndex() + 1);
+            logic.setPondering(ponderCheck.isSelected());
             configDialog.dispose();
         });
         startButton.addMouseListener(new MouseAdapter() {
@@ -408,11 +683,12 @@ public class TicTacToeGUI extends JFrame {
         rulesText.setEditable(false);
         rulesText.setOpaque(false);
         rulesText.setFont(new Font("Arial", Font.PLAIN, 14));
-        String difficultyText = logic.getDifficultyLevel() == 1 ? "Easy" : logic.getDifficultyLevel() == 2 ? "Medium" : "Hard";
+        String difficultyText = logic.getDifficultyLevel() == 1 ? "Easy" : logic.getDifficultyLevel() == 2 ? "Medium"
+                : logic.getDifficultyLevel() == 3 ? "Hard" : "Expert";
         String rules = "<html>" +
                 "<h1 style='color: white; text-align: center;'>Welcome to Tic-Tac-Toe!</h1>" +
                 "<h2 style='color: orange;'>Objective</h2>" +
-                "<p style='color: white;'>Place " + logic.getBoardSize() + " of your symbols ('X' or 'O') in a row, column, or diagonal to win a round.</p>" +
+                "<p style='color: white;'>Place " + logic.getMarksToWin() + " of your symbols ('X' or 'O') in a row, column, or diagonal to win a round.</p>" +
                 "<h2 style='color: orange;'>Rules</h2>" +
                 "<ul style='color: white;'>" +
                 "<li>Playing on a " + logic.getBoardSize() + "x" + logic.getBoardSize() + " board with " + logic.getMaxRounds() + " rounds.</li>" +
@@ -424,6 +700,8 @@ public class TicTacToeGUI extends JFrame {
                 "<h2 style='color: orange;'>Controls</h2>" +
                 "<ul style='color: white;'>" +
                 "<li><b>Undo (Ctrl+Z)</b>: Undo last move.</li>" +
+                "<li><b>Redo (Ctrl+Y)</b>: Redo an undone move.</li>" +
+                "<li><b>Analyze (Ctrl+A)</b>: Show a win/draw/loss heatmap for every empty cell.</li>" +
                 "<li><b>Restart Round (Ctrl+R)</b>: Restart the current round.</li>" +
                 "<li><b>Save (Ctrl+S)</b>: Save game state.</li>" +
                 "<li><b>Load (Ctrl+L)</b>: Load saved game.</li>" +
@@ -537,6 +815,15 @@ public class TicTacToeGUI extends JFrame {
         undoButton.addActionListener(e -> undoMove());
         btnPanel.add(undoButton);
 
+        redoButton = new JButton("↪️ Redo");
+        redoButton.setToolTipText("Redo undone move (Ctrl+Y)");
+        redoButton.setMnemonic(KeyEvent.VK_Y);
+        redoButton.setFont(new Font("Arial", Font.PLAIN, 14));
+        redoButton.setBackground(new Color(50, 50, 50));
+        redoButton.setForeground(fgColor);
+        redoButton.addActionListener(e -> redoMove());
+        btnPanel.add(redoButton);
+
         restartRoundButton = new JButton("🔁 Restart Round");
         restartRoundButton.setToolTipText("Restart current round (Ctrl+R)");
         restartRoundButton.setMnemonic(KeyEvent.VK_R);
@@ -564,6 +851,15 @@ public class TicTacToeGUI extends JFrame {
         loadButton.addActionListener(e -> loadGame());
         btnPanel.add(loadButton);
 
+        reviewButton = new JButton("🎞️ Review");
+        reviewButton.setToolTipText("Replay a saved match or game archive on a timeline (Ctrl+P)");
+        reviewButton.setMnemonic(KeyEvent.VK_P);
+        reviewButton.setFont(new Font("Arial", Font.PLAIN, 14));
+        reviewButton.setBackground(new Color(50, 50, 50));
+        reviewButton.setForeground(fgColor);
+        reviewButton.addActionListener(e -> openReplay());
+        btnPanel.add(reviewButton);
+
         replayButton = new JButton("🔄 Replay");
         replayButton.setToolTipText("Start a new game (Ctrl+N)");
         replayButton.setMnemonic(KeyEvent.VK_N);
@@ -584,11 +880,27 @@ public class TicTacToeGUI extends JFrame {
         closeButton.addActionListener(e -> System.exit(0));
         btnPanel.add(closeButton);
 
+        analyzeButton = new JButton("🔥 Analyze");
+        analyzeButton.setToolTipText("Show win/draw/loss heatmap for empty cells (Ctrl+A)");
+        analyzeButton.setMnemonic(KeyEvent.VK_A);
+        analyzeButton.setFont(new Font("Arial", Font.PLAIN, 14));
+        analyzeButton.setBackground(new Color(50, 50, 50));
+        analyzeButton.setForeground(fgColor);
+        analyzeButton.addActionListener(e -> toggleAnalysis());
+        btnPanel.add(analyzeButton);
+
         bottomPanel.add(btnPanel);
         getContentPane().add(bottomPanel, BorderLayout.SOUTH);
     }
 
     private void onCellClicked(int row, int col) {
+        if (network != null && networkHost != logic.isPlayerTurn()) {
+            return;
+        }
+        placeMove(row, col, network != null);
+    }
+
+    private void placeMove(int row, int col, boolean broadcast) {
         if (logic.isGameOver()) {
             return;
         }
@@ -597,22 +909,16 @@ public class TicTacToeGUI extends JFrame {
         if (!logic.makeMove(row, col, symbol)) {
             return;
         }
+        if (broadcast) {
+            network.sendMove(row * logic.getBoardSize() + col, TicTacToeLogic.symbolToSide(symbol));
+        }
 
         buttons[row][col].setSymbol(symbol);
         addParticleEffect(row, col);
         animateButton(buttons[row][col]);
         updateButtons(false);
 
-        if (logic.checkWinner(symbol)) {
-            logic.updateScore(symbol);
-            String winner = logic.isPlayerTurn() ? logic.getPlayerName() : logic.getOpponentName();
-            updateAfterRound(winner + " wins!");
-            return;
-        }
-
-        if (logic.isBoardFull()) {
-            logic.updateScore("");
-            updateAfterRound("Draw!");
+        if (finishRoundIfOver(symbol)) {
             return;
         }
 
@@ -621,13 +927,29 @@ public class TicTacToeGUI extends JFrame {
         if (logic.isVsComputer() && !logic.isPlayerTurn()) {
             SwingUtilities.invokeLater(() -> {
                 statusLabel.setText("Computer is thinking...");
-                Timer timer = new Timer(500, e -> computerMove());
+                Timer timer = new Timer(logic.hasPonderedMove() ? 50 : 500, e -> computerMove());
                 timer.setRepeats(false);
                 timer.start();
             });
         }
     }
 
+    // Scores the round if symbol's move just won it or filled the board.
+    private boolean finishRoundIfOver(String symbol) {
+        if (logic.checkWinner(symbol)) {
+            logic.updateScore(symbol);
+            String winner = logic.isPlayerTurn() ? logic.getPlayerName() : logic.getOpponentName();
+            updateAfterRound(winner + " wins!");
+            return true;
+        }
+        if (logic.isBoardFull()) {
+            logic.updateScore("");
+            updateAfterRound("Draw!");
+            return true;
+        }
+        return false;
+    }
+
     private void computerMove() {
         if (logic.isGameOver() || logic.isPlayerTurn()) {
             return;
@@ -676,12 +998,14 @@ public class TicTacToeGUI extends JFrame {
     }
 
     private void updateStatusLabel() {
+        refreshAnalysis();
         if (logic.isGameOver()) {
             return;
         }
 
         if (logic.isPlayerTurn()) {
             statusLabel.setText(logic.getPlayerName() + "'s turn (" + logic.getPlayerSymbol() + ")");
+            logic.ponder();
         } else {
             if (logic.isVsComputer()) {
                 statusLabel.setText("Computer's turn (" + logic.getComputerSymbol() + ")");
@@ -703,6 +1027,11 @@ public class TicTacToeGUI extends JFrame {
             endGame();
         } else {
             logic.nextRound();
+            if (network != null) {
+                boolean playerIsX = logic.getPlayerSymbol().equals("X");
+                network.newRound(logic.getCurrentRound(), playerIsX ? logic.getPlayerScore() : logic.getOpponentScore(),
+                        playerIsX ? logic.getOpponentScore() : logic.getPlayerScore(), logic.getDrawCount());
+            }
             roundLabel.setText("Round: " + logic.getCurrentRound() + " / " + logic.getMaxRounds());
             resetBoardUI();
             updateStatusLabel();
@@ -716,74 +1045,11 @@ public class TicTacToeGUI extends JFrame {
         glowTimer.addActionListener(e -> {
             glowPhase[0] += 0.1f;
             if (glowPhase[0] > 2 * Math.PI) glowPhase[0] -= 2 * Math.PI;
-            boolean updated = false;
-
-            for (int i = 0; i < logic.getBoardSize(); i++) {
-                boolean win = true;
-                for (int j = 0; j < logic.getBoardSize(); j++) {
-                    if (!logic.getMark(i, j).equals(symbol)) {
-                        win = false;
-                        break;
-                    }
-                }
-                if (win) {
-                    for (int j = 0; j < logic.getBoardSize(); j++) {
-                        buttons[i][j].setGlowPhase(glowPhase[0]);
-                        buttons[i][j].setBackground(winHighlight);
-                    }
-                    updated = true;
-                }
-            }
-
-            if (!updated) {
-                for (int j = 0; j < logic.getBoardSize(); j++) {
-                    boolean win = true;
-                    for (int i = 0; i < logic.getBoardSize(); i++) {
-                        if (!logic.getMark(i, j).equals(symbol)) {
-                            win = false;
-                            break;
-                        }
-                    }
-                    if (win) {
-                        for (int i = 0; i < logic.getBoardSize(); i++) {
-                            buttons[i][j].setGlowPhase(glowPhase[0]);
-                            buttons[i][j].setBackground(winHighlight);
-                        }
-                        updated = true;
-                    }
-                }
-            }
-
-            if (!updated) {
-                boolean diag1 = true;
-                for (int i = 0; i < logic.getBoardSize(); i++) {
-                    if (!logic.getMark(i, i).equals(symbol)) {
-                        diag1 = false;
-                        break;
-                    }
-                }
-                if (diag1) {
-                    for (int i = 0; i < logic.getBoardSize(); i++) {
-                        buttons[i][i].setGlowPhase(glowPhase[0]);
-                        buttons[i][i].setBackground(winHighlight);
-                    }
-                    updated = true;
-                }
-            }
-
-            if (!updated) {
-                boolean diag2 = true;
-                for (int i = 0; i < logic.getBoardSize(); i++) {
-                    if (!logic.getMark(i, logic.getBoardSize() - i - 1).equals(symbol)) {
-                        diag2 = false;
-                        break;
-                    }
-                }
-                if (diag2) {
-                    for (int i = 0; i < logic.getBoardSize(); i++) {
-                        buttons[i][logic.getBoardSize() - i - 1].setGlowPhase(glowPhase[0]);
-                        buttons[i][logic.getBoardSize() - i - 1].setBackground(winHighlight);
-                    }
+            int[][] line = logic.getWinningLine(symbol);
+            if (line != null) {
+                for (int[] cell : line) {
+                    buttons[cell[0]][cell[1]].setGlowPhase(glowPhase[0]);
+                    buttons[cell[0]][cell[1]].setBackground(winHighlight);
                 }
             }
 
@@ -821,6 +1087,13 @@ public class TicTacToeGUI extends JFrame {
         }
     }
 
+    private void redoMove() {
+        if (logic.redoLastMove()) {
+            updateButtons(true);
+            updateStatusLabel();
+        }
+    }
+
     private void restartRound() {
         logic.restartRound();
         resetBoardUI();
@@ -844,23 +1117,75 @@ public class TicTacToeGUI extends JFrame {
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
-                logic = TicTacToeLogic.loadGame(fileChooser.getSelectedFile().getAbsolutePath());
+                TicTacToeLogic loaded = TicTacToeLogic.loadGame(fileChooser.getSelectedFile().getAbsolutePath());
                 dispose();
-                SwingUtilities.invokeLater(() -> new TicTacToeGUI().setLogic(logic));
+                SwingUtilities.invokeLater(() -> new TicTacToeGUI().setLogic(loaded));
             } catch (IOException | ClassNotFoundException ex) {
                 JOptionPane.showMessageDialog(this, "Error loading game: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
 
+    private void openReplay() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        fileChooser.setDialogTitle("Open a saved match or an archive directory");
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        try {
+            if (file.isDirectory() || file.getName().equals("games.dat")) {
+                java.nio.file.Path dir = (file.isDirectory() ? file : file.getParentFile()).toPath().toAbsolutePath().normalize();
+                if (!new File(dir.toFile(), "games.dat").isFile()) {
+                    JOptionPane.showMessageDialog(this, "No game archive in " + dir, "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                boolean shared = archive != null && archive.getDirectory().toAbsolutePath().normalize().equals(dir);
+                GameArchive source = shared ? archive : new GameArchive(dir, true);
+                if (source.getGameCount() == 0) {
+                    if (!shared) {
+                        source.close();
+                    }
+                    JOptionPane.showMessageDialog(this, "The archive has no games yet.");
+                    return;
+                }
+                ReplayWindow window = new ReplayWindow("Replay: " + dir.getFileName(), source, !shared);
+                window.showArchiveGame(0);
+                window.setVisible(true);
+            } else {
+                TicTacToeLogic saved = TicTacToeLogic.loadGame(file.getAbsolutePath());
+                ReplayWindow window = new ReplayWindow("Replay: " + file.getName(), null, false);
+                window.showGame(saved.getBoardSize(), saved.getHistorySnapshot().getMoves(),
+                        "Saved match, round " + saved.getCurrentRound() + ", " + saved.getMarksToWin() + " in a row");
+                window.setVisible(true);
+            }
+        } catch (IOException | ClassNotFoundException ex) {
+            JOptionPane.showMessageDialog(this, "Error opening replay: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void replayGame() {
         logic.replayGame();
         dispose();
         SwingUtilities.invokeLater(() -> new TicTacToeGUI());
     }
 
+    // Load and replay open a new frame, so the old one's analyzer and ponderer threads stop here.
+    @Override
+    public void dispose() {
+        if (analyzer != null) {
+            analyzer.shutdown();
+            analyzer = null;
+        }
+        logic.stopPondering();
+        super.dispose();
+    }
+
     private void setLogic(TicTacToeLogic logic) {
         this.logic = logic;
+        logic.setArchive(archive);
+        logic.setPlayerStats(playerStats);
         int panelWidth = 500;
         int panelHeight = 450;
 
@@ -910,16 +1235,22 @@ public class TicTacToeGUI extends JFrame {
         modeToggleButton.setBackground(new Color(50, 50, 50));
         undoButton.setForeground(fgColor);
         undoButton.setBackground(new Color(50, 50, 50));
+        redoButton.setForeground(fgColor);
+        redoButton.setBackground(new Color(50, 50, 50));
         restartRoundButton.setForeground(fgColor);
         restartRoundButton.setBackground(new Color(50, 50, 50));
         saveButton.setForeground(fgColor);
         saveButton.setBackground(new Color(50, 50, 50));
         loadButton.setForeground(fgColor);
         loadButton.setBackground(new Color(50, 50, 50));
+        reviewButton.setForeground(fgColor);
+        reviewButton.setBackground(new Color(50, 50, 50));
         replayButton.setForeground(fgColor);
         replayButton.setBackground(new Color(50, 50, 50));
         closeButton.setForeground(fgColor);
         closeButton.setBackground(new Color(50, 50, 50));
+        analyzeButton.setForeground(fgColor);
+        analyzeButton.setBackground(new Color(50, 50, 50));
 
         for (int i = 0; i < logic.getBoardSize(); i++) {
             for (int j = 0; j < logic.getBoardSize(); j++) {
@@ -957,12 +1288,195 @@ public class TicTacToeGUI extends JFrame {
         timer.start();
     }
 
+    private void toggleAnalysis() {
+        analysisMode = !analysisMode;
+        analyzeButton.setText(analysisMode ? "🔥 Hide Analysis" : "🔥 Analyze");
+        if (analysisMode && analyzer == null) {
+            analyzer = new PositionAnalyzer(logic.getBoardSize(), logic.getMarksToWin(),
+                    (key, values, finished) -> SwingUtilities.invokeLater(() -> showAnalysis(key, values)));
+        }
+        refreshAnalysis();
+    }
+
+    private void refreshAnalysis() {
+        if (analyzer == null) {
+            return;
+        }
+        if (!analysisMode || logic.isGameOver()) {
+            analyzer.stop();
+            clearAnalysis();
+            return;
+        }
+        String symbol = logic.isPlayerTurn() ? logic.getPlayerSymbol() : logic.getOpponentSymbol();
+        analyzer.analyze(logic.getSnapshot().toCells(), TicTacToeLogic.symbolToSide(symbol));
+    }
+
+    private void showAnalysis(long positionKey, PositionAnalyzer.CellValue[] values) {
+        if (!analysisMode || positionKey != PositionAnalyzer.positionKey(logic.getSnapshot().toCells(), logic.getBoardSize(), logic.getMarksToWin())) {
+            return;
+        }
+        int size = logic.getBoardSize();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                PositionAnalyzer.CellValue value = values[i * size + j];
+                if (value == null) {
+                    buttons[i][j].setAnalysis("", null);
+                } else {
+                    buttons[i][j].setAnalysis(value.label(), heatColor(value));
+                }
+            }
+        }
+    }
+
+    private Color heatColor(PositionAnalyzer.CellValue value) {
+        switch (value.outcome) {
+            case PositionAnalyzer.WIN:
+                return new Color(60, 200, 90, 150);
+            case PositionAnalyzer.LOSS:
+                return new Color(220, 70, 60, 150);
+            case PositionAnalyzer.DRAW:
+                return new Color(230, 180, 60, 150);
+            default:
+                float t = Math.max(-1f, Math.min(1f, value.score / 20000f));
+                return t >= 0 ? new Color(60, 200, 90, (int) (40 + 80 * t)) : new Color(220, 70, 60, (int) (40 - 80 * t));
+        }
+    }
+
+    private void clearAnalysis() {
+        for (CustomButton[] row : buttons) {
+            for (CustomButton btn : row) {
+                btn.setAnalysis("", null);
+            }
+        }
+    }
+
     private String getScoreText() {
         return logic.getPlayerName() + ": " + logic.getPlayerScore() + " | " +
         logic.getOpponentName() + ": " + logic.getOpponentScore() + " | Draw: " + logic.getDrawCount();
     }
 
+    // Network play: host X with "--host <port>", join as O with "--join <host>:<port>".
+    private void startNetwork(boolean host, String hostName, int port) {
+        NetTransport.Listener listener = new NetTransport.Listener() {
+            @Override
+            public void remoteMove(int cell) {
+                SwingUtilities.invokeLater(() -> {
+                    if (networkHost != logic.isPlayerTurn()) {
+                        placeMove(cell / logic.getBoardSize(), cell % logic.getBoardSize(), false);
+                    }
+                });
+            }
+
+            @Override
+            public void resynced(int round, int xWins, int oWins, int draws, short[] moves) {
+                SwingUtilities.invokeLater(() -> applyResync(round, xWins, oWins, draws, moves));
+            }
+
+            @Override
+            public void connectionChanged(boolean connected, String message) {
+                SwingUtilities.invokeLater(() -> {
+                    statusLabel.setText(message);
+                    if (connected) {
+                        Timer timer = new Timer(1500, e -> updateStatusLabel());
+                        timer.setRepeats(false);
+                        timer.start();
+                    }
+                });
+            }
+        };
+        try {
+            logic.setVsComputer(false);
+            networkHost = host;
+            network = host
+                    ? NetTransport.host(port, logic.getBoardSize(), logic.getMarksToWin(), listener)
+                    : NetTransport.join(hostName, port, logic.getBoardSize(), logic.getMarksToWin(), listener);
+            setTitle("🎲 Tic Tac Toe - " + (host ? "hosting on port " + port : "joined " + hostName + ":" + port));
+            scoreLabel.setText(getScoreText());
+            statusLabel.setText(host ? "Waiting for opponent..." : "Connecting...");
+            // Undo and restart would fork the two boards, so they are off in network play.
+            undoButton.setEnabled(false);
+            redoButton.setEnabled(false);
+            restartRoundButton.setEnabled(false);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Network error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Takes over the peer's round, score and move log, then scores the round the way a live remote
+    // move would if the log ends it.
+    private void applyResync(int round, int xWins, int oWins, int draws, short[] moves) {
+        boolean playerIsX = logic.getPlayerSymbol().equals("X");
+        logic.resumeRound(round, playerIsX ? xWins : oWins, playerIsX ? oWins : xWins, draws);
+        resetBoardUI();
+        roundLabel.setText("Round: " + logic.getCurrentRound() + " / " + logic.getMaxRounds());
+        scoreLabel.setText(getScoreText());
+        int size = logic.getBoardSize();
+        for (int i = 0; i < moves.length; i++) {
+            int cell = GameTree.cellOf(moves[i]);
+            String symbol = TicTacToeLogic.sideToSymbol(GameTree.sideOf(moves[i]));
+            logic.makeMove(cell / size, cell % size, symbol);
+            if (i == moves.length - 1) {
+                updateButtons(true);
+                if (finishRoundIfOver(symbol)) {
+                    return;
+                }
+            }
+            logic.switchTurn();
+        }
+        updateButtons(true);
+        updateStatusLabel();
+    }
+
+    // Usage: java TicTacToeGUI [--archive <dir>] [--stats <file>] [--host <port> | --join <host:port>]
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new TicTacToeGUI());
+        String host = null;
+        String join = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            try {
+                switch (args[i]) {
+                    case "--archive":
+                        archive = new GameArchive(java.nio.file.Paths.get(args[i + 1]), true);
+                        break;
+                    case "--stats":
+                        playerStats = new PlayerStatsStore(java.nio.file.Paths.get(args[i + 1]));
+                        break;
+                    case "--host":
+                        host = args[i + 1];
+                        break;
+                    case "--join":
+                        join = args[i + 1];
+                        break;
+                    default:
+                        System.err.println("Unknown option " + args[i]);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not open " + args[i + 1] + ": " + e.getMessage());
+            }
+        }
+        // Every way out (window close, the Close button) ends in System.exit, so flush the stats
+        // written behind and close the archive there; a round finished just before quitting counts.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (playerStats != null) {
+                    playerStats.close();
+                }
+                if (archive != null) {
+                    archive.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Error closing stores: " + e.getMessage());
+            }
+        }, "store-shutdown"));
+        String hostPort = host;
+        String joinAddress = join;
+        SwingUtilities.invokeLater(() -> {
+            TicTacToeGUI gui = new TicTacToeGUI();
+            if (hostPort != null) {
+                gui.startNetwork(true, null, Integer.parseInt(hostPort));
+            } else if (joinAddress != null) {
+                String[] address = joinAddress.split(":");
+                gui.startNetwork(false, address[0], Integer.parseInt(address[1]));
+            }
+        });
     }
 }
\ No newline at end of file
@@ -4,7 +4,7 @@ import java.util.*;
 public class TicTacToeLogic implements Serializable {
     private int boardSize;
     private int marksToWin;
-    private String[][] board;
+    private SparseBoard board;
     private boolean isPlayerTurn;
     private int currentRound;
     private int maxRounds;
@@ -18,10 +18,18 @@ public class TicTacToeLogic implements Serializable {
     private String opponentSymbol;
     private String computerSymbol;
     private int difficultyLevel;
-    private List<Move> moveHistory = new ArrayList<>();
+    private GameTree moveHistory = new GameTree();
     private boolean isGameOver;
+    private boolean pondering;
+    private transient Ponderer ponderer;
+    private transient SpectatorHub spectators;
+    private transient GameArchive archive;
+    private transient PlayerStatsStore playerStats;
+    private transient volatile GameSnapshot snapshot;
+    private transient long version;
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 3L;
+    public static final int MAX_BOARD_SIZE = 19;
 
     public TicTacToeLogic() {
         init(3); // Default to 3x3 board
@@ -35,21 +43,19 @@ public class TicTacToeLogic implements Serializable {
     }
 
     public void init(int size) {
-        if (size < 3 || size > 10) {
-            throw new IllegalArgumentException("Board size must be between 3 and 10");
+        if (size < 3 || size > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Board size must be between 3 and " + MAX_BOARD_SIZE);
         }
         boardSize = size;
-        marksToWin = boardSize;
-        board = new String[boardSize][boardSize];
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                board[i][j] = "";
-            }
-        }
+        // Gomoku-sized boards default to five in a row rather than a full line.
+        marksToWin = boardSize > 10 ? 5 : boardSize;
+        stopPondering();
+        board = new SparseBoard();
         currentRound = 1;
         moveHistory.clear();
         isPlayerTurn = true;
         isGameOver = false;
+        publish();
         System.out.println("Board initialized: " + boardSize + "x" + boardSize + ", marks to win: " + marksToWin);
     }
 
@@ -63,97 +69,55 @@ public class TicTacToeLogic implements Serializable {
             System.out.println("Move rejected: Invalid coordinates (row=" + row + ", col=" + col + ")");
             return false;
         }
-        if (!board[row][col].isEmpty()) {
+        if (!board.isEmpty(row, col)) {
             System.out.println("Move rejected: Cell occupied at (" + row + "," + col + ")");
             return false;
         }
 
-        board[row][col] = symbol;
-        moveHistory.add(new Move(row, col, symbol));
+        board.place(row, col, symbolToSide(symbol));
+        moveHistory.play(row * boardSize + col, symbolToSide(symbol));
         System.out.println("Move successful: " + symbol + " placed at (" + row + "," + col + ")");
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                System.out.print(board[i][j].isEmpty() ? "." : board[i][j]);
-                System.out.print(" ");
+        broadcast(SpectatorHub.Type.MOVE, row * boardSize + col, symbol, null);
+        if (boardSize <= 10) {
+            for (int i = 0; i < boardSize; i++) {
+                for (int j = 0; j < boardSize; j++) {
+                    System.out.print(board.isEmpty(i, j) ? "." : getMark(i, j));
+                    System.out.print(" ");
+                }
+                System.out.println();
             }
-            System.out.println();
         }
         return true;
     }
 
     public boolean checkWinner(String symbol) {
         System.out.println("Checking win for symbol: " + symbol + ", marksToWin=" + marksToWin);
-        // Check rows
-        for (int i = 0; i < boardSize; i++) {
-            boolean rowWin = true;
-            for (int j = 0; j < boardSize; j++) {
-                if (!board[i][j].equals(symbol)) {
-                    rowWin = false;
-                    break;
-                }
-            }
-            if (rowWin) {
-                System.out.println("Win detected in row at i=" + i);
-                isGameOver = true;
-                return true;
-            }
-        }
-        // Check columns
-        for (int j = 0; j < boardSize; j++) {
-            boolean colWin = true;
-            for (int i = 0; i < boardSize; i++) {
-                if (!board[i][j].equals(symbol)) {
-                    colWin = false;
-                    break;
-                }
-            }
-            if (colWin) {
-                System.out.println("Win detected in column at j=" + j);
-                isGameOver = true;
-                return true;
-            }
-        }
-        // Check main diagonal
-        boolean diagWin = true;
-        for (int i = 0; i < boardSize; i++) {
-            if (!board[i][i].equals(symbol)) {
-                diagWin = false;
-                break;
-            }
-        }
-        if (diagWin) {
-            System.out.println("Win detected in main diagonal");
-            isGameOver = true;
-            return true;
-        }
-        // Check anti-diagonal
-        boolean antiDiagWin = true;
-        for (int i = 0; i < boardSize; i++) {
-            if (!board[i][boardSize - i - 1].equals(symbol)) {
-                antiDiagWin = false;
-                break;
-            }
-        }
-        if (antiDiagWin) {
-            System.out.println("Win detected in anti-diagonal");
+        if (getWinningLine(symbol) != null) {
             isGameOver = true;
+            publish();
             return true;
         }
         System.out.println("No win detected for " + symbol);
         return false;
     }
 
+    // Cells of the first run of marksToWin symbols in a row, column or diagonal, or null.
+    public int[][] getWinningLine(String symbol) {
+        int[][] line = board.findLine(symbolToSide(symbol), marksToWin);
+        if (line != null) {
+            System.out.println("Win detected from (" + line[0][0] + "," + line[0][1] + ")");
+        }
+        return line;
+    }
+
     public boolean isBoardFull() {
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                if (board[i][j].isEmpty()) {
-                    System.out.println("Board not full, empty cell at (" + i + "," + j + ")");
-                    return false;
-                }
-            }
+        if (board.size() < boardSize * boardSize) {
+            System.out.println("Board not full, " + (boardSize * boardSize - board.size()) + " empty cells");
+            return false;
         }
         System.out.println("Board is full");
         isGameOver = true;
+        publish();
         return true;
     }
 
@@ -182,13 +146,13 @@ public class TicTacToeLogic implements Serializable {
             if (move == null && rand.nextDouble() < 0.7) {
                 // Prefer center or corners
                 int center = boardSize / 2;
-                if (board[center][center].isEmpty()) {
+                if (board.isEmpty(center, center)) {
                     move = new int[]{center, center};
                 } else {
                     int[][] corners = {{0, 0}, {0, boardSize - 1}, {boardSize - 1, 0}, {boardSize - 1, boardSize - 1}};
                     List<int[]> emptyCorners = new ArrayList<>();
                     for (int[] corner : corners) {
-                        if (board[corner[0]][corner[1]].isEmpty()) {
+                        if (board.isEmpty(corner[0], corner[1])) {
                             emptyCorners.add(corner);
                         }
                     }
@@ -203,15 +167,31 @@ public class TicTacToeLogic implements Serializable {
                     move = emptyCells.get(rand.nextInt(emptyCells.size()));
                 }
             }
-        } else if (difficultyLevel == 3) {
-            // Hard: Use minimax for optimal move
-            move = findBestMove();
+        } else if (difficultyLevel == 4 && NTupleNetwork.forBoard(boardSize, marksToWin) != null) {
+            // Expert: move valued highest by the trained n-tuple network
+            int cell = NTupleNetwork.forBoard(boardSize, marksToWin).bestMove(toCells(), symbolToSide(computerSymbol), null, 0);
+            move = new int[]{cell / boardSize, cell % boardSize};
+        } else if (difficultyLevel >= 3) {
+            OpeningBook book = OpeningBook.forBoard(boardSize, marksToWin);
+            int bookCell = book != null ? book.lookup(toCells()) : -1;
+            if (bookCell >= 0) {
+                // Hard: proven move from the solver's opening book
+                move = new int[]{bookCell / boardSize, bookCell % boardSize};
+                System.out.println("Opening book move: (" + move[0] + "," + move[1] + ")");
+            } else if (boardSize == 3 && marksToWin == 3) {
+                // Hard: Use minimax for optimal move
+                move = findBestMove();
+            } else {
+                // Hard on larger boards: pattern-table evaluator with depth-limited search
+                move = findHeuristicMove();
+            }
         }
 
         if (move != null) {
-            board[move[0]][move[1]] = computerSymbol;
-            moveHistory.add(new Move(move[0], move[1], computerSymbol));
+            board.place(move[0], move[1], symbolToSide(computerSymbol));
+            moveHistory.play(move[0] * boardSize + move[1], symbolToSide(computerSymbol));
             System.out.println("Computer move: (" + move[0] + "," + move[1] + ") with symbol " + computerSymbol);
+            broadcast(SpectatorHub.Type.MOVE, move[0] * boardSize + move[1], computerSymbol, null);
         } else {
             System.out.println("Computer move failed: No empty cells");
         }
@@ -221,7 +201,7 @@ public class TicTacToeLogic implements Serializable {
         List<int[]> emptyCells = new ArrayList<>();
         for (int i = 0; i < boardSize; i++) {
             for (int j = 0; j < boardSize; j++) {
-                if (board[i][j].isEmpty()) {
+                if (board.isEmpty(i, j)) {
                     emptyCells.add(new int[]{i, j});
                 }
             }
@@ -229,96 +209,183 @@ public class TicTacToeLogic implements Serializable {
         return emptyCells;
     }
 
+    // Only cells next to existing stones can complete a line, and the live board is never
+    // written speculatively.
     private int[] findWinningMove(String symbol) {
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                if (board[i][j].isEmpty()) {
-                    boolean wasGameOver = isGameOver;
-                    board[i][j] = symbol;
-                    boolean isWin = checkWinner(symbol);
-                    board[i][j] = "";
-                    isGameOver = wasGameOver;
-                    if (isWin) {
-                        return new int[]{i, j};
-                    }
-                }
+        int side = symbolToSide(symbol);
+        for (long key : board.candidates(1, boardSize)) {
+            int row = SparseBoard.rowOf(key);
+            int col = SparseBoard.colOf(key);
+            if (board.completesLine(row, col, side, marksToWin)) {
+                return new int[]{row, col};
             }
         }
         return null;
     }
 
-    private int[] findBestMove() {
-        int bestScore = Integer.MIN_VALUE;
-        int[] bestMove = null;
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                if (board[i][j].isEmpty()) {
-                    board[i][j] = computerSymbol;
-                    int score = minimax(0, false);
-                    board[i][j] = "";
-                    if (score > bestScore) {
-                        bestScore = score;
-                        bestMove = new int[]{i, j};
-                    }
-                }
+    // Depth of the Hard search on boards other than the classic one.
+    private int searchDepth() {
+        return boardSize <= 5 ? 4 : 3;
+    }
+
+    private int[] findHeuristicMove() {
+        if (ponderer != null) {
+            // A pondered answer is used only when it was searched at least as deep as Hard would.
+            int cell = ponderer.takeResponse(toCells(), searchDepth());
+            if (cell >= 0) {
+                System.out.println("Pondered move hit: cell=" + cell);
+                return new int[]{cell / boardSize, cell % boardSize};
             }
         }
-        return bestMove;
+        int[] cells = toCells();
+        int side = symbolToSide(computerSymbol);
+        SolvedPositionCache.Solved solved = SolvedPositionCache.shared().get(cells, boardSize, marksToWin, side);
+        if (solved != null && solved.cell >= 0) {
+            System.out.println("Solved-position cache hit: cell=" + solved.cell + " (" + SolvedPositionCache.shared().stats() + ")");
+            return new int[]{solved.cell / boardSize, solved.cell % boardSize};
+        }
+        HeuristicSearch search = new HeuristicSearch(boardSize, marksToWin);
+        if (ponderer != null) {
+            search.setTable(ponderer.getTable());
+        }
+        int cell = search.findBestMove(cells, side, searchDepth());
+        System.out.println("Heuristic search: cell=" + cell + ", score=" + search.getLastScore() + ", nodes=" + search.getNodeCount());
+        if (cell >= 0 && EngineAI.isProven(search)) {
+            SolvedPositionCache.shared().put(cells, boardSize, marksToWin, side, cell, search.getLastScore(),
+                    EngineAI.classify(search.getLastScore()));
+        }
+        return cell < 0 ? null : new int[]{cell / boardSize, cell % boardSize};
     }
 
-    private int minimax(int depth, boolean isMaximizing) {
-        if (checkWinner(computerSymbol)) return 10 - depth;
-        if (checkWinner(playerSymbol)) return depth - 10;
-        if (isBoardFull()) return 0;
+    // Lets the engine search likely replies while the human is thinking (Hard, larger boards only).
+    public void ponder() {
+        if (!pondering || !isVsComputer || isGameOver || !isPlayerTurn || difficultyLevel != 3
+                || (boardSize == 3 && marksToWin == 3)) {
+            return;
+        }
+        if (ponderer == null) {
+            ponderer = new Ponderer(boardSize, marksToWin);
+        }
+        ponderer.ponder(toCells(), symbolToSide(playerSymbol));
+    }
 
-        if (isMaximizing) {
-            int bestScore = Integer.MIN_VALUE;
-            for (int i = 0; i < boardSize; i++) {
-                for (int j = 0; j < boardSize; j++) {
-                    if (board[i][j].isEmpty()) {
-                        board[i][j] = computerSymbol;
-                        int score = minimax(depth + 1, false);
-                        board[i][j] = "";
-                        bestScore = Math.max(score, bestScore);
-                    }
-                }
-            }
-            return bestScore;
-        } else {
-            int bestScore = Integer.MAX_VALUE;
-            for (int i = 0; i < boardSize; i++) {
-                for (int j = 0; j < boardSize; j++) {
-                    if (board[i][j].isEmpty()) {
-                        board[i][j] = playerSymbol;
-                        int score = minimax(depth + 1, true);
-                        board[i][j] = "";
-                        bestScore = Math.min(score, bestScore);
-                    }
-                }
-            }
-            return bestScore;
+    public boolean hasPonderedMove() {
+        return ponderer != null && ponderer.hasResponse(toCells(), searchDepth());
+    }
+
+    // Stops the background search without changing the pondering setting.
+    public void stopPondering() {
+        if (ponderer != null) {
+            ponderer.shutdown();
+            ponderer = null;
         }
     }
 
+    public boolean isPondering() {
+        return pondering;
+    }
+
+    public void setPondering(boolean enabled) {
+        pondering = enabled;
+        if (!enabled) {
+            stopPondering();
+        }
+        System.out.println("Pondering " + (enabled ? "enabled" : "disabled"));
+    }
+
+    int[] toCells() {
+        int[] cells = new int[boardSize * boardSize];
+        board.forEach((row, col, side) -> cells[row * boardSize + col] = side);
+        return cells;
+    }
+
+    static int symbolToSide(String symbol) {
+        return symbol.equals("X") ? ThreatEvaluator.X : symbol.equals("O") ? ThreatEvaluator.O : ThreatEvaluator.EMPTY;
+    }
+
+    static String sideToSymbol(int side) {
+        return side == ThreatEvaluator.X ? "X" : side == ThreatEvaluator.O ? "O" : "";
+    }
+
+    // Exact search for the classic game on a private copy of the board.
+    private int[] findBestMove() {
+        int cell = EngineAI.perfectMove(toCells(), symbolToSide(computerSymbol));
+        return cell < 0 ? null : new int[]{cell / boardSize, cell % boardSize};
+    }
+
+    // A finished round has already been scored, archived and recorded, so it cannot be taken back.
     public boolean undoLastMove() {
         if (moveHistory.isEmpty()) {
             System.out.println("Undo failed: No moves to undo");
             return false;
         }
-        Move lastMove = moveHistory.remove(moveHistory.size() - 1);
-        board[lastMove.row][lastMove.col] = "";
+        if (isGameOver) {
+            System.out.println("Undo failed: Round is over");
+            return false;
+        }
+        short lastMove = moveHistory.undo();
+        clearCell(lastMove);
         isPlayerTurn = !isPlayerTurn;
         isGameOver = false;
-        System.out.println("Undid move: " + lastMove.symbol + " at (" + lastMove.row + "," + lastMove.col + ")");
+        System.out.println("Undid move: " + describe(lastMove));
         if (isVsComputer && !moveHistory.isEmpty() && !isPlayerTurn) {
-            Move computerMove = moveHistory.remove(moveHistory.size() - 1);
-            board[computerMove.row][computerMove.col] = "";
+            short computerMove = moveHistory.undo();
+            clearCell(computerMove);
             isPlayerTurn = true;
-            System.out.println("Undid computer move: " + computerMove.symbol + " at (" + computerMove.row + "," + computerMove.col + ")");
+            System.out.println("Undid computer move: " + describe(computerMove));
+        }
+        broadcast(SpectatorHub.Type.UNDO, -1, null, null);
+        return true;
+    }
+
+    public boolean redoLastMove() {
+        if (!moveHistory.canRedo()) {
+            System.out.println("Redo failed: No moves to redo");
+            return false;
+        }
+        short move = moveHistory.redo();
+        restoreCell(move);
+        isPlayerTurn = !isPlayerTurn;
+        System.out.println("Redid move: " + describe(move));
+        if (isVsComputer && moveHistory.canRedo() && !isPlayerTurn) {
+            short computerMove = moveHistory.redo();
+            restoreCell(computerMove);
+            isPlayerTurn = true;
+            System.out.println("Redid computer move: " + describe(computerMove));
+        }
+        // A redone line can end the round again; the win or draw stands without being rescored.
+        if (getWinningLine("X") != null || getWinningLine("O") != null || board.size() == boardSize * boardSize) {
+            isGameOver = true;
+            publish();
         }
+        broadcast(SpectatorHub.Type.MOVE, GameTree.cellOf(move), sideToSymbol(GameTree.sideOf(move)), null);
         return true;
     }
 
+    public boolean canRedo() {
+        return moveHistory.canRedo();
+    }
+
+    // Immutable view of the current line of play; safe to keep while the game continues.
+    public GameTree.Node getHistorySnapshot() {
+        return moveHistory.snapshot();
+    }
+
+    private void clearCell(short move) {
+        int cell = GameTree.cellOf(move);
+        board.remove(cell / boardSize, cell % boardSize);
+    }
+
+    private void restoreCell(short move) {
+        int cell = GameTree.cellOf(move);
+        board.place(cell / boardSize, cell % boardSize, GameTree.sideOf(move));
+    }
+
+    private String describe(short move) {
+        int cell = GameTree.cellOf(move);
+        return sideToSymbol(GameTree.sideOf(move)) + " at (" + cell / boardSize + "," + cell % boardSize + ")";
+    }
+
     public void updateScore(String winnerSymbol) {
         System.out.println("Updating score for winner: " + winnerSymbol);
         if (winnerSymbol.isEmpty()) {
@@ -332,33 +399,43 @@ public class TicTacToeLogic implements Serializable {
             System.out.println("Score updated: Opponent wins");
         }
         isGameOver = true;
+        archiveRound(winnerSymbol);
+        if (playerStats != null && isVsComputer) {
+            int result = winnerSymbol.isEmpty() ? PlayerStatsStore.DRAW
+                    : winnerSymbol.equals(playerSymbol) ? PlayerStatsStore.WIN : PlayerStatsStore.LOSS;
+            playerStats.record(playerName, result, PlayerStatsStore.opponentRating(difficultyLevel));
+        }
+        broadcast(SpectatorHub.Type.ROUND_OVER, -1, null, winnerSymbol.isEmpty() ? "DRAW" : winnerSymbol);
     }
 
     public void nextRound() {
         System.out.println("Starting next round: " + (currentRound + 1));
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                board[i][j] = "";
-            }
-        }
+        board.clear();
         moveHistory.clear();
         currentRound++;
         isPlayerTurn = true;
         isGameOver = false;
         System.out.println("Next round started: Round " + currentRound);
+        broadcast(SpectatorHub.Type.RESET, -1, null, null);
+    }
+
+    // Starts round afresh with the given scores, e.g. to catch up with a network peer.
+    public void resumeRound(int round, int playerScore, int opponentScore, int drawCount) {
+        this.currentRound = round;
+        this.playerScore = playerScore;
+        this.opponentScore = opponentScore;
+        this.drawCount = drawCount;
+        restartRound();
     }
 
     public void restartRound() {
         System.out.println("Restarting current round: " + currentRound);
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                board[i][j] = "";
-            }
-        }
+        board.clear();
         moveHistory.clear();
         isPlayerTurn = true;
         isGameOver = false;
         System.out.println("Round restarted: Round " + currentRound);
+        broadcast(SpectatorHub.Type.RESET, -1, null, null);
     }
 
     public void replayGame() {
@@ -367,15 +444,12 @@ public class TicTacToeLogic implements Serializable {
         opponentScore = 0;
         drawCount = 0;
         currentRound = 1;
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                board[i][j] = "";
-            }
-        }
+        board.clear();
         moveHistory.clear();
         isPlayerTurn = true;
         isGameOver = false;
         System.out.println("Game replay started");
+        broadcast(SpectatorHub.Type.RESET, -1, null, null);
     }
 
     public void saveGame(String filePath) throws IOException {
@@ -388,14 +462,77 @@ public class TicTacToeLogic implements Serializable {
     public static TicTacToeLogic loadGame(String filePath) throws IOException, ClassNotFoundException {
         try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
             TicTacToeLogic loaded = (TicTacToeLogic) ois.readObject();
-            if (loaded.boardSize < 3 || loaded.boardSize > 10) {
+            if (loaded.boardSize < 3 || loaded.boardSize > MAX_BOARD_SIZE) {
                 throw new IOException("Invalid board size in saved game");
             }
+            loaded.publish();
             System.out.println("Game loaded from: " + filePath);
             return loaded;
         }
     }
 
+    // Records rounds against the computer under the player's name, so results survive replayGame
+    // and restarts.
+    public void setPlayerStats(PlayerStatsStore playerStats) {
+        this.playerStats = playerStats;
+    }
+
+    // Keeps every finished round in the archive instead of losing it at the next round.
+    public void setArchive(GameArchive archive) {
+        this.archive = archive;
+    }
+
+    private void archiveRound(String winnerSymbol) {
+        if (archive == null) {
+            return;
+        }
+        int outcome = winnerSymbol.equals("X") ? GameArchive.X_WINS
+                : winnerSymbol.equals("O") ? GameArchive.O_WINS : GameArchive.DRAW;
+        try {
+            archive.append(boardSize, marksToWin, isVsComputer ? difficultyLevel : 0,
+                    isVsComputer ? symbolToSide(computerSymbol) : ThreatEvaluator.EMPTY, outcome,
+                    moveHistory.snapshot().getMoves());
+        } catch (IOException e) {
+            System.err.println("Could not archive round: " + e.getMessage());
+        }
+    }
+
+    // Streams every move, undo, reset and round result of this game to the hub's subscribers.
+    public void setSpectatorHub(SpectatorHub hub) {
+        spectators = hub;
+    }
+
+    public SpectatorHub getSpectatorHub() {
+        return spectators;
+    }
+
+    private void broadcast(SpectatorHub.Type type, int cell, String symbol, String result) {
+        GameSnapshot current = publish();
+        if (spectators != null) {
+            spectators.publish(type, current.boardString(), cell, symbol, current.getRound(), current.getPlayerScore(),
+                    current.getOpponentScore(), current.getDrawCount(), result);
+        }
+    }
+
+    // Called by the single writer after every change; readers on other threads only ever see
+    // complete snapshots.
+    private GameSnapshot publish() {
+        if (board == null) {
+            return snapshot;
+        }
+        byte[] cells = new byte[boardSize * boardSize];
+        board.forEach((row, col, side) -> cells[row * boardSize + col] = (byte) side);
+        GameSnapshot next = new GameSnapshot(++version, boardSize, marksToWin, cells, isPlayerTurn, isGameOver,
+                currentRound, maxRounds, playerScore, opponentScore, drawCount, moveHistory.snapshot());
+        snapshot = next;
+        return next;
+    }
+
+    // Latest published state; safe to call from any thread.
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     public boolean isGameOver() {
         return isGameOver;
     }
@@ -406,6 +543,7 @@ public class TicTacToeLogic implements Serializable {
 
     public void switchTurn() {
         isPlayerTurn = !isPlayerTurn;
+        publish();
         System.out.println("Turn switched, isPlayerTurn: " + isPlayerTurn);
     }
 
@@ -414,13 +552,26 @@ public class TicTacToeLogic implements Serializable {
             System.err.println("Invalid coordinates for getMark: (" + row + "," + col + ")");
             return "";
         }
-        return board[row][col];
+        return sideToSymbol(board.get(row, col));
     }
 
     public int getBoardSize() {
         return boardSize;
     }
 
+    public int getMarksToWin() {
+        return marksToWin;
+    }
+
+    public void setMarksToWin(int marks) {
+        if (marks >= 3 && marks <= boardSize) {
+            marksToWin = marks;
+            stopPondering();
+            publish();
+            System.out.println("Marks to win set to: " + marks);
+        }
+    }
+
     public int getCurrentRound() {
         return currentRound;
     }
@@ -432,6 +583,7 @@ public class TicTacToeLogic implements Serializable {
     public void setMaxRounds(int rounds) {
         if (rounds > 0) {
             maxRounds = rounds;
+            publish();
             System.out.println("Max rounds set to: " + rounds);
         }
     }
@@ -522,25 +674,13 @@ public class TicTacToeLogic implements Serializable {
     }
 
     public void setDifficultyLevel(int level) {
-        if (level >= 1 && level <= 3) {
+        if (level >= 1 && level <= 4) {
             difficultyLevel = level;
-            System.out.println("Difficulty level set to: " + (level == 1 ? "Easy" : level == 2 ? "Medium" : "Hard"));
+            System.out.println("Difficulty level set to: " + (level == 1 ? "Easy" : level == 2 ? "Medium" : level == 3 ? "Hard" : "Expert"));
         }
     }
 
     public int getDifficultyLevel() {
         return difficultyLevel;
     }
-
-    private static class Move implements Serializable {
-        private static final long serialVersionUID = 1L;
-        int row, col;
-        String symbol;
-
-        Move(int row, int col, String symbol) {
-            this.row = row;
-            this.col = col;
-            this.symbol = symbol;
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    public static final class Entry {
+        public final int score;
+        public final int depth;
+        public final int bound;
+        public final int move;
+        public final int stones;
+
+        Entry(int score, int depth, int bound, int move, int stones) {
+            this.score = score;
+            this.depth = depth;
+            this.bound = bound;
+            this.move = move;
+            this.stones = stones;
+        }
+    }
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    public TranspositionTable(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Entry get(long key) {
+        return entries.get(key);
+    }
+
+    public void put(long key, int score, int depth, int bound, int move, int stones) {
+        Entry existing = entries.get(key);
+        if (existing != null && existing.depth > depth) {
+            return;
+        }
+        if (existing == null && entries.size() >= maxEntries) {
+            return;
+        }
+        entries.put(key, new Entry(score, depth, bound, move, stones));
+    }
+
+    // Positions with fewer stones can never be reached again once play has moved past them.
+    public void retainFrom(int stones) {
+        entries.values().removeIf(entry -> entry.stones < stones);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}